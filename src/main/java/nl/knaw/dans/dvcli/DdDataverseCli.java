@@ -18,9 +18,11 @@ package nl.knaw.dans.dvcli;
 
 import lombok.extern.slf4j.Slf4j;
 import nl.knaw.dans.dvcli.action.Database;
+import nl.knaw.dans.dvcli.action.HttpConnectionPool;
 import nl.knaw.dans.dvcli.command.TruncateNotifications;
 import nl.knaw.dans.dvcli.command.collection.CollectionCmd;
 import nl.knaw.dans.dvcli.command.collection.CollectionCreateDataset;
+import nl.knaw.dans.dvcli.command.collection.CollectionCreateDatasets;
 import nl.knaw.dans.dvcli.command.collection.CollectionDelete;
 import nl.knaw.dans.dvcli.command.collection.CollectionGetContents;
 import nl.knaw.dans.dvcli.command.collection.CollectionGetStorageSize;
@@ -47,8 +49,14 @@ import nl.knaw.dans.dvcli.command.dataset.roleassignment.DatasetRoleAssignment;
 import nl.knaw.dans.dvcli.command.dataset.roleassignment.DatasetRoleAssignmentAdd;
 import nl.knaw.dans.dvcli.command.dataset.roleassignment.DatasetRoleAssignmentList;
 import nl.knaw.dans.dvcli.command.dataset.roleassignment.DatasetRoleAssignmentRemove;
+import nl.knaw.dans.dvcli.command.db.DbCmd;
+import nl.knaw.dans.dvcli.command.db.DbExport;
+import nl.knaw.dans.dvcli.command.db.DbRetention;
 import nl.knaw.dans.dvcli.config.DdDataverseCliConfig;
+import nl.knaw.dans.lib.dataverse.DataverseClient;
+import nl.knaw.dans.lib.dataverse.DataverseClientConfig;
 import nl.knaw.dans.lib.util.AbstractCommandLineApp;
+import nl.knaw.dans.lib.util.DataverseClientFactory;
 import nl.knaw.dans.lib.util.PicocliVersionProvider;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
@@ -70,12 +78,15 @@ public class DdDataverseCli extends AbstractCommandLineApp<DdDataverseCliConfig>
     @Override
     public void configureCommandLine(CommandLine commandLine, DdDataverseCliConfig config) {
         log.debug("Building Dataverse client");
-        var dataverseClient = config.getApi().build();
+        var api = config.getApi();
+        var httpConnectionPool = new HttpConnectionPool(config.getHttp(), api.getBaseUrl());
+        var dataverseClient = new DataverseClient(toClientConfig(api), httpConnectionPool.getHttpClient(), null);
         var databaseConfig = config.getDb();
         var database = new Database(databaseConfig);
 
-        commandLine.addSubcommand(new CommandLine(new CollectionCmd(dataverseClient))
+        commandLine.addSubcommand(new CommandLine(new CollectionCmd(dataverseClient, httpConnectionPool))
                 .addSubcommand(new CollectionCreateDataset())
+                .addSubcommand(new CollectionCreateDatasets())
                 .addSubcommand(new CollectionDelete())
                 .addSubcommand(new CollectionGetContents())
                 .addSubcommand(new CollectionGetStorageSize())
@@ -90,7 +101,7 @@ public class DdDataverseCli extends AbstractCommandLineApp<DdDataverseCliConfig>
                     .addSubcommand(new CollectionRoleAssignmentRemove()))
                 .addSubcommand(new CollectionSetMetadataBlocksRoot())
                 .addSubcommand(new CollectionView()))
-            .addSubcommand(new CommandLine(new DatasetCmd(dataverseClient))
+            .addSubcommand(new CommandLine(new DatasetCmd(dataverseClient, httpConnectionPool))
                 .addSubcommand(new DatasetDeleteDraft())
                 .addSubcommand(new DatasetGetFiles())
                 .addSubcommand(new DatasetGetLatestVersion())
@@ -103,7 +114,22 @@ public class DdDataverseCli extends AbstractCommandLineApp<DdDataverseCliConfig>
                     .addSubcommand(new DatasetRoleAssignmentRemove()))
                 .addSubcommand(new DatasetValidateFiles())
             )
+            .addSubcommand(new CommandLine(new DbCmd(database))
+                .addSubcommand(new DbExport())
+                .addSubcommand(new DbRetention()))
             .addSubcommand(new CommandLine(new TruncateNotifications(database)));
         log.debug("Configuring command line");
     }
+
+    // The factory cannot be given an HTTP client, so the client is created here, but with all the settings of the factory
+    private static DataverseClientConfig toClientConfig(DataverseClientFactory api) {
+        return new DataverseClientConfig(
+            api.getBaseUrl(),
+            api.getApiKey(),
+            api.getAwaitLockStateMaxNumberOfRetries(),
+            api.getAwaitLockStateMillisecondsBetweenRetries(),
+            api.getAwaitIndexingMaxNumberOfRetries(),
+            api.getAwaitIndexingMillisecondsBetweenRetries(),
+            api.getUnblockKey());
+    }
 }
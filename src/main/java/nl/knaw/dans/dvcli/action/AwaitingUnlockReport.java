@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.action;
+
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+/**
+ * A report for actions that start something on the server that only takes effect later, such as publishing a dataset. A successful action is not reported right away; instead, the item is
+ * tracked by a {@link LockTracker}, and reported to the wrapped report when it is no longer locked, or as failed when waiting for it fails. No thread waits for the item in the meantime. A failed
+ * action is reported right away.
+ * <p>
+ * The number of items that are waited for is bounded by the <code>inProgress</code> semaphore: the action must acquire a permit before it starts something, and release it again if it fails.
+ * The permit of a successful action is released when the item has been reported.
+ *
+ * @param <I> the type of the items
+ * @param <R> the type of the action results
+ */
+@AllArgsConstructor
+@Slf4j
+public class AwaitingUnlockReport<I, R> implements Report<I, R> {
+    @NonNull
+    private final LockTracker lockTracker;
+
+    /**
+     * Gives the check whether an item is still locked.
+     */
+    @NonNull
+    private final Function<I, Callable<Boolean>> isLocked;
+
+    @NonNull
+    private final Semaphore inProgress;
+
+    /**
+     * The report to which the items are reported when they are no longer locked. It is called from the thread of the lock tracker, so it must be thread-safe.
+     */
+    @NonNull
+    private final Report<I, R> report;
+
+    private final List<CompletableFuture<Void>> unlocked = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void reportSuccess(String label, I item, R result) {
+        log.info("{} started; waiting for it to be unlocked", label);
+        unlocked.add(lockTracker.track(isLocked.apply(item))
+            .whenComplete((ignored, e) -> {
+                inProgress.release();
+                if (e == null) {
+                    report.reportSuccess(label, item, result);
+                }
+                else {
+                    report.reportFailure(label, item, e instanceof Exception exception ? exception : new Exception(e));
+                }
+            }));
+    }
+
+    @Override
+    public void reportFailure(String label, I item, Exception e) {
+        report.reportFailure(label, item, e);
+    }
+
+    /**
+     * Waits until all items that are waited for have been reported.
+     */
+    public void awaitAll() {
+        // Failures have been reported already, so they are not rethrown
+        CompletableFuture.allOf(unlocked.toArray(new CompletableFuture[0])).exceptionally(e -> null).join();
+    }
+}
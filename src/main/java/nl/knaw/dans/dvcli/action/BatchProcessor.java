@@ -21,11 +21,13 @@ import lombok.extern.slf4j.Slf4j;
 
 import java.util.Collection;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
 import java.util.stream.Stream;
 
 /**
  * Processes a batch of labeled items by applying an action to each item. The labels are used for reporting. Typically, the label is the ID of the item. After each action, the processor waits for a
- * delay, if specified. The processor reports the results of the actions to a report.
+ * delay, if specified. The processor reports the results of the actions to a report. If the parallelism is greater than 1, that many items are processed at the same time; the delay is then
+ * applied between the starts of the actions, and the results are reported in the order in which the actions finish.
  *
  * @param <I> the type of the items
  * @param <R> the type of action results
@@ -63,6 +65,22 @@ public class BatchProcessor<I, R>  {
     @Builder.Default
     private final long delay = 1000;
 
+    /**
+     * The maximum number of items that are processed at the same time. The action and the items must be safe to use from multiple threads if this is greater than 1.
+     */
+    @Builder.Default
+    private final int parallelism = 1;
+
+    /**
+     * Called before the first item is processed, with the parallelism. May be null.
+     */
+    private final IntConsumer onStart;
+
+    /**
+     * Called after the last item has been processed. May be null.
+     */
+    private final Runnable onFinish;
+
     public static class BatchProcessorBuilder<I, R> {
         public BatchProcessorBuilder<I, R> labeledItems(Collection<Pair<String, I>> items) {
             this.labeledItems = items.stream();
@@ -78,21 +96,30 @@ public class BatchProcessor<I, R>  {
 
     public void process() {
         log.info("Starting batch processing of " + (numberOfItems == null ? "?" : numberOfItems + " items"));
+        if (onStart != null) {
+            onStart.accept(parallelism);
+        }
+        var serializedReport = new SynchronizedReport<>(report);
         AtomicInteger i = new AtomicInteger(0);
-        try {
+        try (var executor = new ThrottledExecutor(parallelism, delay)) {
             labeledItems.forEach(labeledItem -> {
                 int index = i.incrementAndGet();
-                delayIfNeeded(index);
-                log.info("Processing item {} of {}: {}", index, numberOfItems == null ? "?" : numberOfItems, labeledItem.getFirst());
-                callAction(labeledItem.getFirst(), labeledItem.getSecond());
+                executor.execute(() -> {
+                    log.info("Processing item {} of {}: {}", index, numberOfItems == null ? "?" : numberOfItems, labeledItem.getFirst());
+                    callAction(labeledItem.getFirst(), labeledItem.getSecond(), serializedReport);
+                });
             });
-        } finally {
+        }
+        finally {
             labeledItems.close();
         }
+        if (onFinish != null) {
+            onFinish.run();
+        }
         log.info("Finished batch processing of " + (numberOfItems == null ? "?" : numberOfItems + " items"));
     }
 
-    private void callAction(String label, I item) {
+    private void callAction(String label, I item, Report<I, R> report) {
         try {
             R r = action.apply(item);
             report.reportSuccess(label, item, r);
@@ -101,18 +128,4 @@ public class BatchProcessor<I, R>  {
             report.reportFailure(label, item, e);
         }
     }
-
-    private void delayIfNeeded(int i) {
-        if (delay > 0 && i > 1) {
-            log.debug("Sleeping for {} ms", delay);
-            try {
-                Thread.sleep(delay);
-            }
-            catch (InterruptedException e) {
-                log.error("Sleep interrupted", e);
-                Thread.currentThread().interrupt();
-            }
-        }
-    }
-
 }
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.action;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The content of a text file, read on first use and reused after that, e.g. a dataset description that is sent to many collections. A failed read is not remembered, so that every use reports the
+ * failure. Safe to use from multiple threads.
+ */
+public class CachedFileContent {
+    private final Path path;
+    private volatile String content;
+
+    public CachedFileContent(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * @return the content of the file, decoded as UTF-8
+     * @throws IOException if the file cannot be read
+     */
+    public String get() throws IOException {
+        var result = content;
+        if (result == null) {
+            synchronized (this) {
+                if (content == null) {
+                    content = Files.readString(path);
+                }
+                result = content;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.action;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.SequenceInputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Answers GET requests from a {@link ResponseCache} while it is enabled. Responses with an ETag or Last-Modified header are revalidated with a conditional request on every use, so that an
+ * unchanged resource only costs a 304 response. Responses without these headers are used without asking the server for <code>timeToLiveMillis</code>. Only successful responses are cached. The
+ * cache is keyed by the URI and the API key, so that a response is never shown to a user with other permissions.
+ */
+@Slf4j
+public class CachingHttpClient extends CloseableHttpClient {
+    private static final String API_KEY_HEADER = "X-Dataverse-key";
+
+    private final CloseableHttpClient delegate;
+    private final ResponseCache cache;
+    private final long timeToLiveMillis;
+    private final long maxEntrySize;
+    private volatile boolean enabled = false;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong revalidated = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public CachingHttpClient(CloseableHttpClient delegate, ResponseCache cache, long timeToLiveMillis, long maxEntrySize) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.timeToLiveMillis = timeToLiveMillis;
+        this.maxEntrySize = maxEntrySize;
+    }
+
+    /**
+     * Starts using the cache. Until this is called, all requests are passed on to the server. Only read-only commands should enable the cache, because a cached response does not reflect the
+     * changes that the command itself makes.
+     */
+    public void enable() {
+        enabled = true;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return a one-line summary of the use of the cache
+     */
+    public String getStatistics() {
+        return String.format("cache: %d hit(s), %d revalidated, %d miss(es)", hits.get(), revalidated.get(), misses.get());
+    }
+
+    @Override
+    protected CloseableHttpResponse doExecute(HttpHost target, HttpRequest request, HttpContext context) throws IOException {
+        if (!enabled || !"GET".equalsIgnoreCase(request.getRequestLine().getMethod())) {
+            return delegate.execute(target, request, context);
+        }
+        var apiKey = request.getFirstHeader(API_KEY_HEADER);
+        var key = ResponseCache.key(apiKey == null ? null : apiKey.getValue(), uriOf(target, request));
+        var entry = cache.get(key);
+        long now = System.currentTimeMillis();
+        if (entry != null) {
+            if (!entry.hasValidators() && now - entry.storedAt() < timeToLiveMillis) {
+                hits.incrementAndGet();
+                return toResponse(entry);
+            }
+            if (entry.etag() != null) {
+                request.setHeader(HttpHeaders.IF_NONE_MATCH, entry.etag());
+            }
+            if (entry.lastModified() != null) {
+                request.setHeader(HttpHeaders.IF_MODIFIED_SINCE, entry.lastModified());
+            }
+        }
+        var response = delegate.execute(target, request, context);
+        int status = response.getStatusLine().getStatusCode();
+        if (status == HttpStatus.SC_NOT_MODIFIED && entry != null) {
+            response.close();
+            var refreshed = entry.revalidated(now);
+            cache.put(key, refreshed);
+            revalidated.incrementAndGet();
+            return toResponse(refreshed);
+        }
+        misses.incrementAndGet();
+        if (status == HttpStatus.SC_OK && response.getEntity() != null) {
+            store(key, response, now);
+        }
+        return response;
+    }
+
+    // Reads the body into memory, unless it is too large; in that case the part that was read is put back in front of the rest
+    private void store(String key, CloseableHttpResponse response, long now) throws IOException {
+        var entity = response.getEntity();
+        if (entity.getContentLength() > maxEntrySize) {
+            return;
+        }
+        var in = entity.getContent();
+        var body = in.readNBytes((int) Math.min(maxEntrySize + 1, Integer.MAX_VALUE));
+        if (body.length > maxEntrySize) {
+            response.setEntity(new InputStreamEntity(new SequenceInputStream(new ByteArrayInputStream(body), in), -1, null));
+            copyContentType(entity, response.getEntity());
+            return;
+        }
+        in.close();
+        var buffered = new ByteArrayEntity(body);
+        copyContentType(entity, buffered);
+        response.setEntity(buffered);
+        cache.put(key, new ResponseCache.Entry(now, headerValue(entity.getContentType()), headerValue(response.getFirstHeader(HttpHeaders.ETAG)),
+            headerValue(response.getFirstHeader(HttpHeaders.LAST_MODIFIED)), body));
+    }
+
+    private static void copyContentType(HttpEntity from, HttpEntity to) {
+        if (from.getContentType() != null) {
+            ((AbstractHttpEntity) to).setContentType(from.getContentType());
+        }
+    }
+
+    private static String headerValue(Header header) {
+        return header == null ? null : header.getValue();
+    }
+
+    private static String uriOf(HttpHost target, HttpRequest request) {
+        var uri = request.getRequestLine().getUri();
+        return uri.startsWith("/") && target != null ? target.toURI() + uri : uri;
+    }
+
+    private static CloseableHttpResponse toResponse(ResponseCache.Entry entry) {
+        var response = new CachedResponse();
+        var entity = new ByteArrayEntity(entry.body());
+        if (entry.contentType() != null) {
+            entity.setContentType(entry.contentType());
+            response.setHeader(HttpHeaders.CONTENT_TYPE, entry.contentType());
+        }
+        if (entry.etag() != null) {
+            response.setHeader(HttpHeaders.ETAG, entry.etag());
+        }
+        if (entry.lastModified() != null) {
+            response.setHeader(HttpHeaders.LAST_MODIFIED, entry.lastModified());
+        }
+        response.setEntity(entity);
+        return response;
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public HttpParams getParams() {
+        return delegate.getParams();
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public ClientConnectionManager getConnectionManager() {
+        return delegate.getConnectionManager();
+    }
+
+    private static class CachedResponse extends BasicHttpResponse implements CloseableHttpResponse {
+        CachedResponse() {
+            super(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        }
+
+        @Override
+        public void close() {
+            // Nothing to release
+        }
+    }
+}
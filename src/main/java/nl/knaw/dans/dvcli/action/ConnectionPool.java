@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.action;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * A bounded pool of database connections. At most <code>maxConnections</code> connections are open at the same time; a caller that needs a connection while all of them are in use waits at most
+ * <code>connectionTimeoutMillis</code>. Connections that have been idle for a while are validated before they are handed out again, and connections that have been idle longer than
+ * <code>idleTimeoutMillis</code> are closed. Whenever the pool closes a connection, it first passes it to the <code>onClose</code> callback, so that resources kept per connection can be
+ * released with it.
+ */
+@Slf4j
+public class ConnectionPool implements AutoCloseable {
+    private static final long VALIDATE_AFTER_IDLE_MILLIS = 1000;
+
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection create() throws SQLException;
+    }
+
+    private record IdleConnection(Connection connection, long idleSince) {
+    }
+
+    private final ConnectionFactory factory;
+    private final Semaphore permits;
+    private final long connectionTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final int validationTimeoutSeconds;
+    private final Consumer<Connection> onClose;
+    // Most recently returned connection first, so that the oldest ones are evicted first
+    private final Deque<IdleConnection> idle = new ArrayDeque<>();
+    private boolean closed = false;
+
+    public ConnectionPool(ConnectionFactory factory, int maxConnections, long connectionTimeoutMillis, long idleTimeoutMillis, int validationTimeoutSeconds) {
+        this(factory, maxConnections, connectionTimeoutMillis, idleTimeoutMillis, validationTimeoutSeconds, connection -> {
+        });
+    }
+
+    public ConnectionPool(ConnectionFactory factory, int maxConnections, long connectionTimeoutMillis, long idleTimeoutMillis, int validationTimeoutSeconds,
+        Consumer<Connection> onClose) {
+        if (maxConnections < 1) {
+            throw new IllegalArgumentException("Maximum number of connections must be at least 1, now it was " + maxConnections);
+        }
+        this.factory = factory;
+        this.permits = new Semaphore(maxConnections, true);
+        this.connectionTimeoutMillis = connectionTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.onClose = onClose;
+    }
+
+    /**
+     * Takes a connection from the pool, opening a new one if no idle connection is available. The connection must be given back with {@link #release(Connection)}.
+     *
+     * @return a connection
+     * @throws SQLException if no connection becomes available in time, or a new connection cannot be opened
+     */
+    public Connection borrow() throws SQLException {
+        try {
+            if (!permits.tryAcquire(connectionTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLTimeoutException("Timed out after " + connectionTimeoutMillis + " ms waiting for a database connection");
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+        try {
+            IdleConnection candidate;
+            while ((candidate = takeIdle()) != null) {
+                if (isUsable(candidate)) {
+                    return candidate.connection();
+                }
+                closeQuietly(candidate.connection());
+            }
+            log.debug("Opening new database connection");
+            return factory.create();
+        }
+        catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Gives a connection back to the pool. Open transactions are rolled back. Connections that are closed or broken are discarded.
+     *
+     * @param connection a connection obtained from {@link #borrow()}
+     */
+    public void release(Connection connection) {
+        try {
+            boolean reusable;
+            try {
+                reusable = !connection.isClosed();
+                if (reusable && !connection.getAutoCommit()) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+            }
+            catch (SQLException e) {
+                log.warn("Discarding database connection: {}", e.getMessage());
+                reusable = false;
+            }
+            synchronized (this) {
+                if (reusable && !closed) {
+                    idle.addFirst(new IdleConnection(connection, System.currentTimeMillis()));
+                    connection = null;
+                }
+                evictIdle();
+            }
+            if (connection != null) {
+                closeQuietly(connection);
+            }
+        }
+        finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Closes all idle connections. Connections that are in use are closed when they are released.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            while (!idle.isEmpty()) {
+                closeQuietly(idle.pollFirst().connection());
+            }
+        }
+    }
+
+    private synchronized IdleConnection takeIdle() {
+        evictIdle();
+        return idle.pollFirst();
+    }
+
+    private synchronized void evictIdle() {
+        long now = System.currentTimeMillis();
+        while (!idle.isEmpty() && now - idle.peekLast().idleSince() > idleTimeoutMillis) {
+            log.debug("Closing idle database connection");
+            closeQuietly(idle.pollLast().connection());
+        }
+    }
+
+    private boolean isUsable(IdleConnection candidate) {
+        if (System.currentTimeMillis() - candidate.idleSince() < VALIDATE_AFTER_IDLE_MILLIS) {
+            return true;
+        }
+        try {
+            return candidate.connection().isValid(validationTimeoutSeconds);
+        }
+        catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void closeQuietly(Connection connection) {
+        try {
+            onClose.accept(connection);
+        }
+        catch (RuntimeException e) {
+            log.warn("Error releasing resources of database connection: {}", e.getMessage());
+        }
+        try {
+            connection.close();
+        }
+        catch (SQLException e) {
+            log.warn("Error closing database connection: {}", e.getMessage());
+        }
+    }
+}
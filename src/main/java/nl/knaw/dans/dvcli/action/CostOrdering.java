@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.action;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+
+/**
+ * Orders labeled items by their expected cost, most expensive first, so that the longest jobs of a parallel batch start first and the batch does not end with one long job running on its own.
+ * Items whose cost cannot be determined are put at the end, in their original order.
+ */
+@Slf4j
+public class CostOrdering {
+    private static final long UNKNOWN = -1;
+
+    private CostOrdering() {
+    }
+
+    /**
+     * @param items   the items to order
+     * @param cost    determines the expected cost of an item, e.g. the number or total size of its files
+     * @param threads the number of costs that are determined at the same time
+     * @param <T>     the type of the items
+     * @return the items, most expensive first
+     */
+    public static <T> List<Pair<String, T>> mostExpensiveFirst(List<Pair<String, T>> items, ThrowingFunction<T, Long, Exception> cost, int threads) {
+        var executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            var tasks = new ArrayList<Callable<Long>>();
+            for (var item : items) {
+                tasks.add(() -> {
+                    try {
+                        return cost.apply(item.getSecond());
+                    }
+                    catch (Exception e) {
+                        log.warn("Could not determine the cost of {}: {}", item.getFirst(), e.getMessage());
+                        return UNKNOWN;
+                    }
+                });
+            }
+            var costs = new ArrayList<Long>();
+            for (var future : executor.invokeAll(tasks)) {
+                costs.add(future.get());
+            }
+            var indexes = new ArrayList<Integer>();
+            for (int i = 0; i < items.size(); i++) {
+                indexes.add(i);
+            }
+            // List.sort is stable, so items with the same cost keep their order
+            indexes.sort(Comparator.comparing((Integer i) -> costs.get(i)).reversed());
+            return indexes.stream().map(items::get).toList();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while determining costs", e);
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException("Could not determine costs", e.getCause());
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -15,16 +15,30 @@
  */
 package nl.knaw.dans.dvcli.action;
 
+import io.dropwizard.util.Duration;
 import lombok.extern.slf4j.Slf4j;
 import nl.knaw.dans.dvcli.config.DdDataverseDatabaseConfig;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.core.BaseConnection;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Provides access to the Dataverse Database (Postgres).
@@ -32,7 +46,11 @@ import java.util.List;
  * and must be done by direct access to the database.
  * <p> 
  * Note that the sql input strings are not filtered in any way, 
- * so don't put user input in there!
+ * so don't put user input in there! Use the methods that take
+ * parameters for values that are not constants.
+ * <p>
+ * Connections are taken from a bounded pool (see {@link ConnectionPool}),
+ * so independent statements can be executed from several threads at once.
  */
 @Slf4j
 public class Database {
@@ -42,9 +60,25 @@ public class Database {
         this.database = config.getDatabase();
         this.user = config.getUser();
         this.password = config.getPassword();
+        this.maxConnections = config.getMaxConnections();
+        this.connectionTimeout = config.getConnectionTimeout();
+        this.idleTimeout = config.getIdleTimeout();
+        this.validationTimeout = config.getValidationTimeout();
+        this.statementCacheSize = config.getStatementCacheSize();
+        this.fetchSize = config.getFetchSize();
+    }
+
+    /**
+     * Maps the current row of a result set to an object. Use the typed getters of the result set, e.g. {@link ResultSet#getInt(int)}, to read the columns; do not move the cursor.
+     *
+     * @param <T> the type of the object
+     */
+    @FunctionalInterface
+    public interface RowMapper<T> {
+        T map(ResultSet row) throws SQLException;
     }
     
-    Connection connection = null;
+    ConnectionPool pool = null;
 
     String port = "5432"; // Fixed port for Postgres
     
@@ -52,29 +86,65 @@ public class Database {
     String database;
     String user;
     String password;
+    int maxConnections;
+    Duration connectionTimeout;
+    Duration idleTimeout;
+    Duration validationTimeout;
+    int statementCacheSize;
+    int fetchSize;
+
+    // The pool removes and closes the cache of a connection just before it closes that connection
+    private final Map<Connection, StatementCache> statementCaches = new ConcurrentHashMap<>();
     
     public void connect() throws ClassNotFoundException, SQLException {
             Class.forName("org.postgresql.Driver");
-            if (connection == null) {
+            if (pool == null) {
                 log.debug("Starting connecting to database");
-                connection = DriverManager
-                        .getConnection("jdbc:postgresql://" + host + ":" + port + "/" + database,
-                                user,
-                                password);
+                var properties = new Properties();
+                properties.setProperty("user", user);
+                properties.setProperty("password", password);
+                properties.setProperty("connectTimeout", Long.toString(Math.max(1, connectionTimeout.toSeconds())));
+                var url = "jdbc:postgresql://" + host + ":" + port + "/" + database;
+                var newPool = new ConnectionPool(() -> DriverManager.getConnection(url, properties),
+                    maxConnections,
+                    connectionTimeout.toMilliseconds(),
+                    idleTimeout.toMilliseconds(),
+                    (int) Math.max(1, validationTimeout.toSeconds()),
+                    this::closeStatementCache);
+                // Fail fast if the database cannot be reached
+                newPool.release(newPool.borrow());
+                pool = newPool;
             }
 
     }
     
     public void close() {
+        if (pool != null) {
+            log.debug("Close connections to database");
+            pool.close();
+        }
+        pool = null;
+    }
+
+    /**
+     * Runs the function with a connection from the pool. The connection is given back to the pool afterwards, so it must not be used outside the function. This method can be called from
+     * multiple threads at the same time; each call gets its own connection.
+     *
+     * @param function the function to run
+     * @return the result of the function
+     * @param <R> the type of the result
+     * @throws SQLException if no connection is available or the function fails
+     */
+    public <R> R withConnection(ThrowingFunction<Connection, R, SQLException> function) throws SQLException {
+        if (pool == null) {
+            throw new SQLException("Not connected to the database");
+        }
+        var connection = pool.borrow();
         try {
-            if (connection != null) {
-                log.debug("Close connection to database");
-                connection.close();
-            }
-        } catch (SQLException e) {
-            System.err.println( "Database error: " + e.getClass().getName() + " " + e.getMessage() );
-        } finally {
-            connection = null;
+            return function.apply(connection);
+        }
+        finally {
+            pool.release(connection);
         }
     }
 
@@ -85,11 +155,154 @@ public class Database {
     public List<List<String>> query(String sql, Boolean startResultWithColumnNames) throws SQLException {
         log.debug("Querying database with: {}", sql);
         
-        try (
-            Statement stmt = connection.createStatement();
-            ResultSet rs = stmt.executeQuery(sql)
-        ) {
-            return extractResult(rs, startResultWithColumnNames);
+        return withConnection(connection -> {
+            try (
+                Statement stmt = connection.createStatement();
+                ResultSet rs = stmt.executeQuery(sql)
+            ) {
+                return extractResult(rs, startResultWithColumnNames);
+            }
+        });
+    }
+
+    /**
+     * Executes a query with parameters. The statement is prepared once per connection and reused on subsequent calls with the same SQL.
+     *
+     * @param sql        the query, with <code>?</code> for each parameter
+     * @param parameters the values of the parameters, in order
+     * @return the rows of the result, with the values as strings
+     * @throws SQLException if the query fails
+     */
+    public List<List<String>> query(String sql, List<?> parameters) throws SQLException {
+        log.debug("Querying database with: {} {}", sql, parameters);
+
+        return withConnection(connection -> {
+            var stmt = prepare(connection, sql);
+            setParameters(stmt, parameters);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return extractResult(rs, false);
+            }
+        });
+    }
+
+    /**
+     * Executes a query and maps the rows lazily while the stream is consumed. The rows are fetched from the server in portions of <code>fetchSize</code> rows through a cursor, so the result is
+     * never held in memory as a whole. The stream keeps a connection from the pool until it is closed, so it must be closed, preferably with try-with-resources.
+     *
+     * @param sql        the query, with <code>?</code> for each parameter
+     * @param parameters the values of the parameters, in order
+     * @param mapper     maps each row to an object
+     * @return the mapped rows
+     * @param <T> the type of the mapped rows
+     * @throws SQLException if the query fails; errors while reading the result are thrown as {@link RuntimeException} from the stream
+     */
+    public <T> Stream<T> stream(String sql, List<?> parameters, RowMapper<T> mapper) throws SQLException {
+        log.debug("Streaming query result with fetch size {} from: {} {}", fetchSize, sql, parameters);
+        if (pool == null) {
+            throw new SQLException("Not connected to the database");
+        }
+        var connection = pool.borrow();
+        PreparedStatement stmt = null;
+        try {
+            // The Postgres driver only uses a cursor if autocommit is off; the pool restores autocommit when the connection is released
+            connection.setAutoCommit(false);
+            stmt = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(fetchSize);
+            setParameters(stmt, parameters);
+            var rs = stmt.executeQuery();
+            var statement = stmt;
+            return StreamSupport.stream(new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+                @Override
+                public boolean tryAdvance(Consumer<? super T> action) {
+                    try {
+                        if (!rs.next()) {
+                            return false;
+                        }
+                        action.accept(mapper.map(rs));
+                        return true;
+                    }
+                    catch (SQLException e) {
+                        throw new RuntimeException("Error reading query result", e);
+                    }
+                }
+            }, false).onClose(() -> {
+                try {
+                    rs.close();
+                    statement.close();
+                }
+                catch (SQLException e) {
+                    log.warn("Error closing query result: {}", e.getMessage());
+                }
+                finally {
+                    pool.release(connection);
+                }
+            });
+        }
+        catch (SQLException | RuntimeException e) {
+            try {
+                if (stmt != null) {
+                    stmt.close();
+                }
+            }
+            catch (SQLException closeException) {
+                e.addSuppressed(closeException);
+            }
+            pool.release(connection);
+            throw e;
+        }
+    }
+
+    /**
+     * Writes the result of a query to a stream as CSV, using the COPY protocol of Postgres. The rows are not converted to Java objects, and only a small buffer is held in memory, so this is
+     * much faster than reading the result through JDBC.
+     *
+     * @param query  the query, or the name of a table
+     * @param header whether to start with a line with the column names
+     * @param out    the stream to write to; it is not closed
+     * @return the number of rows written
+     * @throws SQLException if the query fails
+     * @throws IOException  if writing to the stream fails
+     */
+    public long copyOut(String query, boolean header, OutputStream out) throws SQLException, IOException {
+        return copyOut(query, header, out, false);
+    }
+
+    /**
+     * Like {@link #copyOut(String, boolean, OutputStream)}, but for a query that modifies data, such as a <code>DELETE ... RETURNING</code>. The stream is flushed before the transaction is
+     * committed, so the modification only takes effect if all rows were written. If anything fails, the transaction is rolled back.
+     *
+     * @param query  the query, which must return the modified rows
+     * @param header whether to start with a line with the column names
+     * @param out    the stream to write to; it is flushed but not closed
+     * @return the number of rows written, which is the number of rows modified
+     * @throws SQLException if the query fails
+     * @throws IOException  if writing to the stream fails
+     */
+    public long copyOutAndCommit(String query, boolean header, OutputStream out) throws SQLException, IOException {
+        return copyOut(query, header, out, true);
+    }
+
+    private long copyOut(String query, boolean header, OutputStream out, boolean commitAfterFlush) throws SQLException, IOException {
+        var sql = "COPY (" + query + ") TO STDOUT WITH (FORMAT csv" + (header ? ", HEADER" : "") + ")";
+        log.debug("Copying out of database with: {}", sql);
+        if (pool == null) {
+            throw new SQLException("Not connected to the database");
+        }
+        var connection = pool.borrow();
+        try {
+            if (commitAfterFlush) {
+                // The pool rolls back an uncommitted transaction when the connection is released
+                connection.setAutoCommit(false);
+            }
+            long rows = new CopyManager(connection.unwrap(BaseConnection.class)).copyOut(sql, out);
+            if (commitAfterFlush) {
+                out.flush();
+                connection.commit();
+            }
+            return rows;
+        }
+        finally {
+            pool.release(connection);
         }
     }
 
@@ -120,8 +333,86 @@ public class Database {
     public int update(String sql) throws SQLException {
         log.debug("Updating database with: {}", sql);
 
-        try (Statement stmt = connection.createStatement()) {
-            return stmt.executeUpdate(sql);
+        return withConnection(connection -> {
+            try (Statement stmt = connection.createStatement()) {
+                return stmt.executeUpdate(sql);
+            }
+        });
+    }
+
+    /**
+     * Executes an update with parameters. The statement is prepared once per connection and reused on subsequent calls with the same SQL.
+     *
+     * @param sql        the statement, with <code>?</code> for each parameter
+     * @param parameters the values of the parameters, in order
+     * @return the number of rows affected
+     * @throws SQLException if the update fails
+     */
+    public int update(String sql, List<?> parameters) throws SQLException {
+        log.debug("Updating database with: {} {}", sql, parameters);
+
+        return withConnection(connection -> {
+            var stmt = prepare(connection, sql);
+            setParameters(stmt, parameters);
+            return stmt.executeUpdate();
+        });
+    }
+
+    /**
+     * Executes the same statement for each row of parameters. The rows are added to a JDBC batch, which is sent to the server each time it holds <code>batchSize</code> rows, so that
+     * <code>batchSize</code> statements take a single round trip.
+     *
+     * @param sql           the statement, with <code>?</code> for each parameter
+     * @param parameterRows the values of the parameters, one list per execution
+     * @param batchSize     the maximum number of statements per round trip
+     * @return the number of rows affected by each execution, in the order of <code>parameterRows</code>
+     * @throws SQLException if one of the batches fails; earlier batches are not rolled back
+     */
+    public int[] executeBatch(String sql, List<? extends List<?>> parameterRows, int batchSize) throws SQLException {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1, now it was " + batchSize);
+        }
+        log.debug("Updating database in batches of {} with: {}", batchSize, sql);
+
+        return withConnection(connection -> {
+            var stmt = prepare(connection, sql);
+            var counts = new int[parameterRows.size()];
+            int executed = 0;
+            int added = 0;
+            for (var parameters : parameterRows) {
+                setParameters(stmt, parameters);
+                stmt.addBatch();
+                if (++added == batchSize) {
+                    executed = copyCounts(stmt.executeBatch(), counts, executed);
+                    added = 0;
+                }
+            }
+            if (added > 0) {
+                copyCounts(stmt.executeBatch(), counts, executed);
+            }
+            return counts;
+        });
+    }
+
+    private static int copyCounts(int[] batchCounts, int[] counts, int offset) {
+        System.arraycopy(batchCounts, 0, counts, offset, batchCounts.length);
+        return offset + batchCounts.length;
+    }
+
+    private PreparedStatement prepare(Connection connection, String sql) throws SQLException {
+        return statementCaches.computeIfAbsent(connection, c -> new StatementCache(c, statementCacheSize)).prepare(sql);
+    }
+
+    private void closeStatementCache(Connection connection) {
+        var cache = statementCaches.remove(connection);
+        if (cache != null) {
+            cache.close();
+        }
+    }
+
+    private static void setParameters(PreparedStatement stmt, List<?> parameters) throws SQLException {
+        for (int i = 0; i < parameters.size(); i++) {
+            stmt.setObject(i + 1, parameters.get(i));
         }
     }
 }
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.action;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A CSV file to which rows are written just before they are deleted. Deleting and archiving happen in one statement, <code>COPY (DELETE ... RETURNING ...) TO STDOUT</code>, so the archived rows
+ * are exactly the deleted rows; the delete is only committed after the rows have been written. The rows go from the database to the file without being converted to Java objects. The column
+ * names are written once, at the start of the file. Statements from different threads are executed one after another, so that their rows are not mixed.
+ * <p>
+ * An existing file is appended to, so that an interrupted run can be started again with the same archive without losing the rows that were already deleted.
+ */
+public class DeleteArchive implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final OutputStream out;
+    private boolean headerWritten;
+
+    DeleteArchive(OutputStream out, boolean headerWritten) {
+        this.out = out;
+        this.headerWritten = headerWritten;
+    }
+
+    /**
+     * Opens an archive file. If its name ends with '.gz', the file is compressed with gzip. Rows are appended to an existing file, without writing the column names again; for a '.gz' file
+     * they go into a new gzip member, which still makes a valid gzip file.
+     *
+     * @param file the file
+     * @return the archive
+     * @throws IOException if the file cannot be created
+     */
+    public static DeleteArchive open(Path file) throws IOException {
+        boolean hasHeader = Files.exists(file) && Files.size(file) > 0;
+        OutputStream out = new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND), BUFFER_SIZE);
+        if (file.getFileName().toString().endsWith(".gz")) {
+            // Sync flush, so that a flush before the commit really writes all rows of the chunk
+            out = new GZIPOutputStream(out, BUFFER_SIZE, true);
+        }
+        return new DeleteArchive(out, hasHeader);
+    }
+
+    /**
+     * Executes a delete statement, writing the deleted rows to the archive.
+     *
+     * @param db                 the database
+     * @param deleteReturningSql a <code>DELETE</code> statement with a <code>RETURNING</code> clause; it cannot have parameters, because COPY does not support them
+     * @return the number of deleted rows
+     * @throws SQLException if the statement fails
+     * @throws IOException  if the rows cannot be written; the delete is then rolled back
+     */
+    public synchronized long deleteAndArchive(Database db, String deleteReturningSql) throws SQLException, IOException {
+        long rows = db.copyOutAndCommit(deleteReturningSql, !headerWritten, out);
+        headerWritten = true;
+        return rows;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+}
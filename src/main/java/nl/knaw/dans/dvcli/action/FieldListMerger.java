@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.action;
+
+import nl.knaw.dans.lib.dataverse.model.dataset.CompoundMultiValueField;
+import nl.knaw.dans.lib.dataverse.model.dataset.MetadataField;
+import nl.knaw.dans.lib.dataverse.model.dataset.PrimitiveMultiValueField;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Merges the metadata fields of several parameter rows for the same dataset into as few field lists as possible, so that they can be sent in as few API calls as possible. Values of the same
+ * multi-value field, primitive or compound, are combined into one field. Other fields can only occur once in a field list, so if two rows contain different values for such a field, the second
+ * row goes into another field list.
+ */
+public class FieldListMerger {
+
+    public static List<List<MetadataField>> merge(List<Set<MetadataField>> rows) {
+        List<Map<String, MetadataField>> fieldLists = new ArrayList<>();
+        for (var row : rows) {
+            var target = fieldLists.stream()
+                .filter(fieldList -> canMerge(fieldList, row))
+                .findFirst()
+                .orElseGet(() -> {
+                    var fieldList = new LinkedHashMap<String, MetadataField>();
+                    fieldLists.add(fieldList);
+                    return fieldList;
+                });
+            for (var field : row) {
+                target.merge(keyOf(field), field, FieldListMerger::mergeFields);
+            }
+        }
+        return fieldLists.stream()
+            .map(fieldList -> List.copyOf(fieldList.values()))
+            .toList();
+    }
+
+    private static boolean canMerge(Map<String, MetadataField> fieldList, Set<MetadataField> row) {
+        for (var field : row) {
+            var existing = fieldList.get(keyOf(field));
+            if (existing != null && !existing.equals(field) && !isMultiValue(field)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static MetadataField mergeFields(MetadataField existing, MetadataField field) {
+        if (existing.equals(field)) {
+            return existing;
+        }
+        // canMerge only lets different values through for multi-value fields, and keyOf keeps primitive and compound fields apart
+        if (existing instanceof CompoundMultiValueField compound) {
+            var values = new LinkedHashSet<>(compound.getValue());
+            values.addAll(((CompoundMultiValueField) field).getValue());
+            return new CompoundMultiValueField(existing.getTypeName(), new ArrayList<>(values));
+        }
+        var values = new LinkedHashSet<>(((PrimitiveMultiValueField) existing).getValue());
+        values.addAll(((PrimitiveMultiValueField) field).getValue());
+        return new PrimitiveMultiValueField(existing.getTypeName(), new ArrayList<>(values));
+    }
+
+    private static boolean isMultiValue(MetadataField field) {
+        return field instanceof PrimitiveMultiValueField || field instanceof CompoundMultiValueField;
+    }
+
+    private static String keyOf(MetadataField field) {
+        return field.getClass().getSimpleName() + ":" + field.getTypeName();
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.action;
+
+import lombok.AllArgsConstructor;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.client.entity.GzipCompressingEntity;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Compresses the body of a request with gzip if it is JSON or XML and at least <code>threshold</code> bytes long. Bodies that are already encoded, of unknown length (e.g. streamed file uploads) or
+ * of another type are sent as they are.
+ */
+@AllArgsConstructor
+class GzipRequestInterceptor implements HttpRequestInterceptor {
+    private final long threshold;
+
+    @Override
+    public void process(HttpRequest request, HttpContext context) {
+        if (request instanceof HttpEntityEnclosingRequest enclosingRequest) {
+            var entity = enclosingRequest.getEntity();
+            if (isCompressible(request, entity)) {
+                enclosingRequest.setEntity(new GzipCompressingEntity(entity));
+            }
+        }
+    }
+
+    private boolean isCompressible(HttpRequest request, HttpEntity entity) {
+        if (entity == null || entity.getContentEncoding() != null || request.containsHeader(HttpHeaders.CONTENT_ENCODING)
+            || !entity.isRepeatable() || entity.getContentLength() < threshold) {
+            return false;
+        }
+        // A Content-Type header on the request takes precedence over the type of the entity
+        var header = request.containsHeader(HttpHeaders.CONTENT_TYPE) ? request.getFirstHeader(HttpHeaders.CONTENT_TYPE) : entity.getContentType();
+        var contentType = header == null ? "" : header.getValue().toLowerCase();
+        return contentType.contains("json") || contentType.contains("xml");
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.action;
+
+import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.dvcli.config.DdDataverseHttpConfig;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.conn.DefaultSchemePortResolver;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of HTTP connections to the Dataverse server, shared by all requests of the client. Connections are kept open for reuse for at most <code>keepAlive</code>, and closed when they have been
+ * idle for <code>idleTimeout</code>. Responses are compressed and large request bodies can be compressed, depending on the configuration. Read-only commands can also have GET requests answered
+ * from an on-disk cache. The pool keeps count of the requests sent and the connections they were sent over, so that the reuse of connections can be reported.
+ */
+@Slf4j
+public class HttpConnectionPool implements AutoCloseable {
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final CachingHttpClient cachingHttpClient;
+    private final HttpHost target;
+    private final int connectTimeoutMillis;
+    private final int connectionRequestTimeoutMillis;
+    private final long keepAliveMillis;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong connections = new AtomicLong();
+
+    public HttpConnectionPool(DdDataverseHttpConfig config, URI baseUrl) {
+        this.target = targetHost(baseUrl);
+        this.connectTimeoutMillis = (int) config.getConnectTimeout().toMilliseconds();
+        this.connectionRequestTimeoutMillis = (int) config.getConnectionRequestTimeout().toMilliseconds();
+        this.keepAliveMillis = config.getKeepAlive().toMilliseconds();
+        this.connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(config.getMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(config.getMaxConnectionsPerRoute());
+        connectionManager.setValidateAfterInactivity((int) config.getValidateAfterInactivity().toMilliseconds());
+        HttpResponseInterceptor requestCounter = (response, context) -> countRequest(HttpClientContext.adapt(context).getConnection());
+        var builder = HttpClients.custom()
+            .setConnectionManager(connectionManager)
+            .setDefaultRequestConfig(RequestConfig.custom()
+                .setConnectTimeout(connectTimeoutMillis)
+                .setSocketTimeout((int) config.getReadTimeout().toMilliseconds())
+                .setConnectionRequestTimeout(connectionRequestTimeoutMillis)
+                .build())
+            .setKeepAliveStrategy((response, context) -> {
+                long announced = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                return announced > 0 ? Math.min(announced, keepAliveMillis) : keepAliveMillis;
+            })
+            .evictExpiredConnections()
+            .evictIdleConnections(config.getIdleTimeout().toMilliseconds(), TimeUnit.MILLISECONDS)
+            .addInterceptorLast(requestCounter);
+        // Accept-Encoding: gzip, deflate is sent by default, and compressed responses are decompressed as they are read
+        if (!config.isCompressResponses()) {
+            builder.disableContentCompression();
+        }
+        if (config.isCompressRequests()) {
+            // Must run before the protocol interceptors, so that those set the Content-Encoding and Transfer-Encoding of the compressed body
+            builder.addInterceptorFirst(new GzipRequestInterceptor(config.getRequestCompressionThreshold().toBytes()));
+        }
+        if (config.getCache().isEnabled()) {
+            var cacheConfig = config.getCache();
+            this.cachingHttpClient = new CachingHttpClient(builder.build(), new ResponseCache(cacheConfig.getDirectory(), cacheConfig.getMaxSize().toBytes()),
+                cacheConfig.getTimeToLive().toMilliseconds(), cacheConfig.getMaxEntrySize().toBytes());
+            this.httpClient = cachingHttpClient;
+        }
+        else {
+            this.cachingHttpClient = null;
+            this.httpClient = builder.build();
+        }
+    }
+
+    /**
+     * @return the HTTP client that sends its requests over this pool
+     */
+    public CloseableHttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    /**
+     * Starts answering GET requests from the on-disk response cache, if the cache is enabled in the configuration. Only read-only commands should call this.
+     */
+    public void enableResponseCache() {
+        if (cachingHttpClient != null) {
+            cachingHttpClient.enable();
+        }
+    }
+
+    /**
+     * Opens connections to the Dataverse server up front, so that the first requests of a batch do not have to wait for them. Connections that are already open in the pool count towards the
+     * number. Failures are logged and otherwise ignored; the requests will then try to connect themselves.
+     *
+     * @param numberOfConnections the number of connections that should be open; it is capped at the maximum number of connections per route
+     */
+    public void prewarm(int numberOfConnections) {
+        int n = Math.min(numberOfConnections, connectionManager.getMaxPerRoute(route()));
+        List<HttpClientConnection> leased = new ArrayList<>();
+        int opened = 0;
+        try {
+            // All connections are leased before any is released, otherwise the same connection would be handed out again
+            for (int i = 0; i < n; i++) {
+                var connection = lease();
+                leased.add(connection);
+                if (!connection.isOpen()) {
+                    connectionManager.connect(connection, route(), connectTimeoutMillis, HttpClientContext.create());
+                    connectionManager.routeComplete(connection, route(), HttpClientContext.create());
+                    opened++;
+                }
+            }
+        }
+        catch (Exception e) {
+            log.warn("Could not pre-warm connections to {}: {}", target, e.getMessage());
+        }
+        finally {
+            for (var connection : leased) {
+                connectionManager.releaseConnection(connection, null, keepAliveMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        log.debug("Pre-warmed {} connection(s) to {}", opened, target);
+    }
+
+    /**
+     * @return a one-line summary of the requests sent and the state of the pool
+     */
+    public String getStatistics() {
+        var stats = connectionManager.getTotalStats();
+        var statistics = String.format("HTTP: %d request(s) over %d connection(s); pool: %d leased, %d available, %d pending, max %d",
+            requests.get(), connections.get(), stats.getLeased(), stats.getAvailable(), stats.getPending(), stats.getMax());
+        if (cachingHttpClient != null && cachingHttpClient.isEnabled()) {
+            statistics += "; " + cachingHttpClient.getStatistics();
+        }
+        return statistics;
+    }
+
+    @Override
+    public void close() throws IOException {
+        httpClient.close();
+    }
+
+    private void countRequest(HttpConnection connection) {
+        requests.incrementAndGet();
+        // The first request over a connection is a new connection
+        if (connection != null && connection.getMetrics().getRequestCount() == 1) {
+            connections.incrementAndGet();
+        }
+    }
+
+    private HttpClientConnection lease() throws Exception {
+        ConnectionRequest request = connectionManager.requestConnection(route(), null);
+        return request.get(connectionRequestTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private HttpRoute route() {
+        return new HttpRoute(target, null, "https".equalsIgnoreCase(target.getSchemeName()));
+    }
+
+    // Must be the same host as the one the client computes for its requests, otherwise the pre-warmed connections would be in a different route
+    private static HttpHost targetHost(URI baseUrl) {
+        var host = new HttpHost(baseUrl.getHost(), baseUrl.getPort(), baseUrl.getScheme());
+        try {
+            return new HttpHost(host.getHostName(), DefaultSchemePortResolver.INSTANCE.resolve(host), host.getSchemeName());
+        }
+        catch (Exception e) {
+            throw new IllegalArgumentException("Cannot determine port for " + baseUrl, e);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.action;
+
+import lombok.AllArgsConstructor;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Groups labeled items with the same label into one work unit, without requiring the input to be sorted. At most <code>lookahead</code> groups are kept open at the same time; when an item with
+ * a new label arrives and the window is full, the oldest group is emitted. Items for a label that appear after its group was emitted start a new group. The items in a group keep their input order
+ * and groups are emitted in the order in which their labels first appeared.
+ *
+ * @param <T> the type of the items
+ */
+@AllArgsConstructor
+public class LabelGrouper<T> {
+    private final int lookahead;
+
+    public Stream<Pair<String, List<T>>> group(Stream<Pair<String, T>> labeledItems) {
+        if (lookahead < 1) {
+            throw new IllegalArgumentException("Lookahead must be at least 1, now it was " + lookahead);
+        }
+        var iterator = new GroupingIterator(labeledItems.iterator());
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+            .onClose(labeledItems::close);
+    }
+
+    private class GroupingIterator implements Iterator<Pair<String, List<T>>> {
+        private final Iterator<Pair<String, T>> source;
+        private final Map<String, List<T>> openGroups = new LinkedHashMap<>();
+        private final Deque<Pair<String, List<T>>> ready = new ArrayDeque<>();
+
+        GroupingIterator(Iterator<Pair<String, T>> source) {
+            this.source = source;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (ready.isEmpty() && source.hasNext()) {
+                var item = source.next();
+                var group = openGroups.get(item.getFirst());
+                if (group == null) {
+                    if (openGroups.size() == lookahead) {
+                        emitOldest();
+                    }
+                    group = new ArrayList<>();
+                    openGroups.put(item.getFirst(), group);
+                }
+                group.add(item.getSecond());
+            }
+            if (ready.isEmpty() && !openGroups.isEmpty()) {
+                emitOldest();
+            }
+            return !ready.isEmpty();
+        }
+
+        @Override
+        public Pair<String, List<T>> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return ready.poll();
+        }
+
+        private void emitOldest() {
+            var oldest = openGroups.entrySet().iterator();
+            var entry = oldest.next();
+            oldest.remove();
+            ready.add(new Pair<>(entry.getKey(), entry.getValue()));
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.action;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Waits for objects, such as datasets that are being published, to become unlocked. All objects are polled by one scheduler thread, every <code>pollIntervalMillis</code>, so the number of
+ * requests to the server does not depend on the number of threads that are waiting. An object that is still locked after <code>maxWaitMillis</code> is given up on.
+ */
+@Slf4j
+public class LockTracker implements AutoCloseable {
+    private record Tracked(Callable<Boolean> isLocked, long deadline, CompletableFuture<Void> unlocked) {
+    }
+
+    private final long maxWaitMillis;
+    private final List<Tracked> tracked = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        var thread = new Thread(runnable, "lock-tracker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public LockTracker(long pollIntervalMillis, long maxWaitMillis) {
+        if (pollIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Poll interval must be positive, now it was " + pollIntervalMillis);
+        }
+        this.maxWaitMillis = maxWaitMillis;
+        scheduler.scheduleWithFixedDelay(this::poll, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts tracking an object.
+     *
+     * @param isLocked checks whether the object is still locked
+     * @return a future that completes when the object is no longer locked, or completes exceptionally if the check fails or the object stays locked for too long
+     */
+    public CompletableFuture<Void> track(Callable<Boolean> isLocked) {
+        var unlocked = new CompletableFuture<Void>();
+        tracked.add(new Tracked(isLocked, System.currentTimeMillis() + maxWaitMillis, unlocked));
+        return unlocked;
+    }
+
+    private void poll() {
+        for (var t : tracked) {
+            try {
+                if (!t.isLocked().call()) {
+                    t.unlocked().complete(null);
+                }
+                else if (System.currentTimeMillis() > t.deadline()) {
+                    t.unlocked().completeExceptionally(new TimeoutException("Still locked after " + maxWaitMillis + " ms"));
+                }
+            }
+            catch (Exception e) {
+                log.debug("Lock check failed", e);
+                t.unlocked().completeExceptionally(e);
+            }
+            if (t.unlocked().isDone()) {
+                tracked.remove(t);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        for (var t : tracked) {
+            t.unlocked().cancel(false);
+        }
+    }
+}
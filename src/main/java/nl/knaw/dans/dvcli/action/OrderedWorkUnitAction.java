@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.action;
+
+import lombok.AllArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Applies an action to each item of a work unit, in order. All items are processed, even if some of them fail. The results of the successful items are returned, one per line; if any item failed,
+ * an exception is thrown that lists the failures.
+ *
+ * @param <T> the type of the items in the work unit
+ * @see LabelGrouper
+ */
+@AllArgsConstructor
+public class OrderedWorkUnitAction<T> implements ThrowingFunction<List<T>, String, Exception> {
+    private final ThrowingFunction<T, String, Exception> action;
+
+    @Override
+    public String apply(List<T> items) throws Exception {
+        var results = new ArrayList<String>();
+        var failures = new ArrayList<String>();
+        for (int i = 0; i < items.size(); i++) {
+            try {
+                results.add(action.apply(items.get(i)));
+            }
+            catch (Exception e) {
+                failures.add("item " + (i + 1) + ": " + e.getClass().getSimpleName() + ", message = " + e.getMessage());
+            }
+        }
+        if (!failures.isEmpty()) {
+            throw new Exception(failures.size() + " of " + items.size() + " item(s) failed (" + String.join("; ", failures) + "). Results of the other items: " + String.join("\n", results));
+        }
+        return String.join("\n", results);
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.action;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the rate at which permits are handed out, e.g. the number of rows deleted per second, over all threads that share the limiter. A caller that acquires permits reserves the time they take
+ * at the configured rate; the next caller waits until that time has passed. So the first call never waits, and a large request delays the callers after it rather than itself.
+ */
+public class RateLimiter {
+    private final double permitsPerSecond;
+    private long nextFreeNanos = System.nanoTime();
+
+    public RateLimiter(double permitsPerSecond) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("Rate must be positive, now it was " + permitsPerSecond);
+        }
+        this.permitsPerSecond = permitsPerSecond;
+    }
+
+    /**
+     * Waits until the permits can be handed out.
+     *
+     * @param permits the number of permits
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public void acquire(long permits) throws InterruptedException {
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long start = Math.max(now, nextFreeNanos);
+            nextFreeNanos = start + (long) (permits * 1_000_000_000d / permitsPerSecond);
+            waitNanos = start - now;
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.action;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Keeps response bodies in files in a directory, one file per key. The total size of the files is kept below <code>maxSize</code> by removing the least recently used files first. Files are
+ * written to a temporary file first and then moved into place, so that concurrent readers never see a partly written file.
+ * <p>
+ * The responses may contain data that only the API key is allowed to see, so on file systems with POSIX permissions the directory is created as <code>rwx------</code> and the files as
+ * <code>rw-------</code>. An existing directory that others than its owner can access is not used.
+ */
+@Slf4j
+public class ResponseCache {
+    private static final int FORMAT_VERSION = 1;
+    private static final String SUFFIX = ".response";
+    private static final Set<PosixFilePermission> DIRECTORY_PERMISSIONS = PosixFilePermissions.fromString("rwx------");
+    private static final Set<PosixFilePermission> FILE_PERMISSIONS = PosixFilePermissions.fromString("rw-------");
+
+    /**
+     * A cached response.
+     *
+     * @param storedAt     when the response was received or last revalidated, in milliseconds since the epoch
+     * @param contentType  the Content-Type of the response, or null
+     * @param etag         the ETag of the response, or null
+     * @param lastModified the Last-Modified header of the response, or null
+     * @param body         the body of the response
+     */
+    public record Entry(long storedAt, String contentType, String etag, String lastModified, byte[] body) {
+        public boolean hasValidators() {
+            return etag != null || lastModified != null;
+        }
+
+        public Entry revalidated(long now) {
+            return new Entry(now, contentType, etag, lastModified, body);
+        }
+    }
+
+    private final Path directory;
+    private final long maxSize;
+    private final boolean posix;
+    private long size = -1;
+    // Whether the directory exists and only its owner can access it; null until checked
+    private Boolean directoryUsable = null;
+
+    public ResponseCache(Path directory, long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.posix = directory.getFileSystem().supportedFileAttributeViews().contains("posix");
+    }
+
+    /**
+     * Computes a key that does not reveal its parts.
+     *
+     * @param scope the scope in which the resource is requested, e.g. the API key; may be null
+     * @param uri   the URI of the resource
+     * @return the key
+     */
+    public static String key(String scope, String uri) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            digest.update((scope == null ? "" : scope).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            digest.update(uri.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Looks up an entry and marks it as recently used.
+     *
+     * @param key the key
+     * @return the entry, or null if there is none or it cannot be read
+     */
+    public Entry get(String key) {
+        if (!isDirectoryUsable()) {
+            return null;
+        }
+        var file = fileFor(key);
+        try (var in = new DataInputStream(Files.newInputStream(file))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            var entry = new Entry(in.readLong(), readOptional(in), readOptional(in), readOptional(in), in.readNBytes(in.readInt()));
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return entry;
+        }
+        catch (NoSuchFileException e) {
+            return null;
+        }
+        catch (IOException e) {
+            log.warn("Ignoring unreadable cache entry {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Stores an entry, replacing the previous one with the same key, and removes the least recently used entries if the cache has grown too large. Failures are logged and otherwise ignored.
+     *
+     * @param key   the key
+     * @param entry the entry
+     */
+    public void put(String key, Entry entry) {
+        if (!isDirectoryUsable()) {
+            return;
+        }
+        var file = fileFor(key);
+        try {
+            var temp = directory.resolve(UUID.randomUUID() + ".tmp");
+            if (posix) {
+                Files.createFile(temp, PosixFilePermissions.asFileAttribute(FILE_PERMISSIONS));
+            }
+            try (var out = new DataOutputStream(Files.newOutputStream(temp))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(entry.storedAt());
+                writeOptional(out, entry.contentType());
+                writeOptional(out, entry.etag());
+                writeOptional(out, entry.lastModified());
+                out.writeInt(entry.body().length);
+                out.write(entry.body());
+            }
+            long previousSize = Files.exists(file) ? Files.size(file) : 0;
+            long newSize = Files.size(temp);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            addToSize(newSize - previousSize);
+        }
+        catch (IOException e) {
+            log.warn("Could not store cache entry {}: {}", file, e.getMessage());
+        }
+    }
+
+    private synchronized boolean isDirectoryUsable() {
+        if (directoryUsable == null) {
+            directoryUsable = prepareDirectory();
+        }
+        return directoryUsable;
+    }
+
+    private boolean prepareDirectory() {
+        try {
+            if (!Files.exists(directory)) {
+                if (posix) {
+                    Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(DIRECTORY_PERMISSIONS));
+                }
+                else {
+                    Files.createDirectories(directory);
+                }
+                return true;
+            }
+            if (posix) {
+                var permissions = Files.getPosixFilePermissions(directory);
+                if (!DIRECTORY_PERMISSIONS.containsAll(permissions)) {
+                    log.warn("Not using response cache directory {}, because others than its owner can access it ({}); change its permissions to rwx------", directory,
+                        PosixFilePermissions.toString(permissions));
+                    return false;
+                }
+            }
+            return true;
+        }
+        catch (IOException e) {
+            log.warn("Not using response cache directory {}: {}", directory, e.getMessage());
+            return false;
+        }
+    }
+
+    private synchronized void addToSize(long delta) throws IOException {
+        if (size < 0) {
+            // Scanned once, after that the size is kept up to date
+            size = listEntries().stream().mapToLong(ResponseCache::sizeOf).sum();
+        }
+        else {
+            size += delta;
+        }
+        if (size > maxSize) {
+            evict();
+        }
+    }
+
+    private void evict() throws IOException {
+        var entries = listEntries();
+        entries.sort(Comparator.comparing(ResponseCache::lastModified));
+        for (var file : entries) {
+            if (size <= maxSize) {
+                break;
+            }
+            long fileSize = sizeOf(file);
+            if (Files.deleteIfExists(file)) {
+                log.debug("Evicted cache entry {}", file.getFileName());
+                size -= fileSize;
+            }
+        }
+    }
+
+    private List<Path> listEntries() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(f -> f.getFileName().toString().endsWith(SUFFIX)).collect(Collectors.toList());
+        }
+    }
+
+    private Path fileFor(String key) {
+        return directory.resolve(key + SUFFIX);
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        }
+        catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        }
+        catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static String readOptional(DataInputStream in) throws IOException {
+        var value = in.readUTF();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static void writeOptional(DataOutputStream out, String value) throws IOException {
+        out.writeUTF(value == null ? "" : value);
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.action;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Records the labels of the items that were processed successfully, one per line, so that an interrupted batch can be resumed by skipping those items. Each label is written as soon as its item
+ * succeeds, so that the log is up to date even if the process is killed.
+ */
+@Slf4j
+public class ResumeLog implements Closeable {
+    private final Set<String> done = new HashSet<>();
+    private final BufferedWriter writer;
+
+    public ResumeLog(Path file) throws IOException {
+        if (Files.exists(file)) {
+            try (var lines = Files.lines(file)) {
+                lines.filter(line -> !line.isBlank()).forEach(done::add);
+            }
+            log.info("Found {} item(s) that were already done in {}", done.size(), file);
+        }
+        this.writer = Files.newBufferedWriter(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * @param label the label of an item
+     * @return whether the item was processed successfully in an earlier run
+     */
+    public synchronized boolean isDone(String label) {
+        return done.contains(label);
+    }
+
+    /**
+     * Records that an item was processed successfully.
+     *
+     * @param label the label of the item
+     * @throws IOException if the label cannot be written
+     */
+    public synchronized void markDone(String label) throws IOException {
+        if (done.add(label)) {
+            writer.write(label);
+            writer.newLine();
+            writer.flush();
+        }
+    }
+
+    /**
+     * Wraps a report, so that the labels of the successful items are recorded in this log.
+     *
+     * @param report the report to wrap
+     * @param <I>    the type of the items
+     * @param <R>    the type of the results
+     * @return the wrapping report
+     */
+    public <I, R> Report<I, R> recording(Report<I, R> report) {
+        return new Report<>() {
+            @Override
+            public void reportSuccess(String label, I i, R r) {
+                report.reportSuccess(label, i, r);
+                try {
+                    markDone(label);
+                }
+                catch (IOException e) {
+                    log.error("Could not record {} as done; it will be processed again if the batch is resumed", label, e);
+                }
+            }
+
+            @Override
+            public void reportFailure(String label, I i, Exception e) {
+                report.reportFailure(label, i, e);
+            }
+        };
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+}
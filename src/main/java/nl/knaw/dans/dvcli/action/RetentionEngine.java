@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.action;
+
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Deletes rows from a table according to a retention policy: for each owner, e.g. a user, the newest <code>keep</code> rows are always kept, and of the other rows only those older than
+ * <code>cutoff</code> are deleted. Either part of the policy may be left out, but not both. Without an owner column, the policy applies to the table as a whole.
+ * <p>
+ * The rows of an owner are deleted from old to new in chunks of at most <code>chunkSize</code> rows, each in a transaction of its own, with <code>chunkDelay</code> milliseconds between chunks and
+ * optionally a rate limit on the number of deleted rows that can be shared with other engines. Since every chunk is committed, an interrupted run leaves only whole chunks deleted, and running it again simply continues.
+ * For the chunks to be found quickly, there should be an index on the owner and order columns.
+ */
+@Builder
+@Slf4j
+public class RetentionEngine {
+    @NonNull
+    private final Database db;
+
+    @NonNull
+    private final String table;
+
+    /**
+     * A column that uniquely identifies a row. Used to break ties in the order column.
+     */
+    @Builder.Default
+    private final String idColumn = "id";
+
+    /**
+     * The column that identifies the owner of a row, or null if the policy applies to the table as a whole.
+     */
+    private final String ownerColumn;
+
+    /**
+     * The column that orders the rows from old to new, typically a timestamp.
+     */
+    @NonNull
+    private final String orderColumn;
+
+    /**
+     * The number of newest rows per owner that are always kept.
+     */
+    private final int keep;
+
+    /**
+     * Only rows with an order value before this are deleted, or null for no age limit.
+     */
+    private final Timestamp cutoff;
+
+    @Builder.Default
+    private final int chunkSize = 10000;
+
+    private final long chunkDelay;
+
+    private final RateLimiter rateLimiter;
+
+    /**
+     * If not null, the rows are written to this archive before they are deleted.
+     */
+    private final DeleteArchive archive;
+
+    /**
+     * The result of applying the policy to the rows of one owner.
+     *
+     * @param deleted the number of deleted rows
+     * @param chunks  the number of chunks in which they were deleted
+     * @param elapsed the time it took, including the delays between chunks
+     */
+    public record Result(long deleted, long chunks, Duration elapsed) {
+        public long rowsPerSecond() {
+            long millis = elapsed.toMillis();
+            return millis == 0 ? deleted : deleted * 1000 / millis;
+        }
+    }
+
+    /**
+     * Finds the owners that have rows to delete. The owners are returned with the Java type that the database driver uses for the owner column, so that they can be passed to {@link #apply}.
+     *
+     * @return the owners
+     * @throws SQLException if the query fails
+     */
+    public List<Object> findOwners() throws SQLException {
+        checkPolicy();
+        var sql = new StringBuilder("SELECT " + owner() + " FROM " + table() + " GROUP BY " + owner() + " HAVING COUNT(*) > ?");
+        var parameters = new ArrayList<Object>(List.of(keep));
+        if (cutoff != null) {
+            sql.append(" AND MIN(").append(order()).append(") < ?");
+            parameters.add(cutoff);
+        }
+        sql.append(";");
+        try (var owners = db.stream(sql.toString(), parameters, row -> row.getObject(1))) {
+            return owners.toList();
+        }
+    }
+
+    /**
+     * Looks up an owner given as text, e.g. on the command line, and returns it with the Java type of the owner column.
+     *
+     * @param owner the owner as text
+     * @return the owner, or empty if the table has no rows for it
+     * @throws SQLException if the query fails
+     */
+    public Optional<Object> findOwner(String owner) throws SQLException {
+        var sql = "SELECT " + owner() + " FROM " + table() + " WHERE " + owner() + "::text = ? LIMIT 1;";
+        try (var owners = db.stream(sql, List.of(owner), row -> row.getObject(1))) {
+            return owners.findFirst();
+        }
+    }
+
+    /**
+     * Applies the policy to the rows of one owner.
+     *
+     * @param owner the owner, as returned by {@link #findOwners()} or {@link #findOwner(String)}; must be null if there is no owner column
+     * @return the result
+     * @throws Exception if a query fails, or the thread is interrupted while waiting between chunks
+     */
+    public Result apply(Object owner) throws Exception {
+        checkPolicy();
+        long start = System.nanoTime();
+        var boundary = keep > 0 ? findKeepBoundary(owner) : Optional.<List<Object>> empty();
+        if (keep > 0 && boundary.isEmpty()) {
+            return new Result(0, 0, Duration.ofNanos(System.nanoTime() - start));
+        }
+        var chunkSelect = chunkSelect(owner, boundary.orElse(null));
+
+        long deleted = 0;
+        long chunks = 0;
+        long count;
+        do {
+            if (chunks > 0 && chunkDelay > 0) {
+                log.debug("Sleeping for {} ms", chunkDelay);
+                Thread.sleep(chunkDelay);
+            }
+            // The deleted rows are gone, so each chunk simply takes the oldest remaining ones
+            count = deleteChunk(chunkSelect);
+            if (rateLimiter != null) {
+                // Only the rows that were actually deleted count; the wait for them is taken before the next statement
+                rateLimiter.acquire(count);
+            }
+            deleted += count;
+            chunks++;
+            log.debug("Deleted {} row(s) from {} for {}", count, table, owner);
+        } while (count >= chunkSize);
+        return new Result(deleted, chunks, Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    /**
+     * Shows the query plan of the statement that {@link #apply} uses to delete a chunk of rows of an owner, without deleting anything. If the owner has no rows beyond the kept ones, the plan
+     * is made for a boundary of nulls, which still shows which indexes are used.
+     *
+     * @param owner the owner; must be null if there is no owner column
+     * @return the lines of the plan
+     * @throws SQLException if a query fails
+     */
+    public List<String> explainChunk(Object owner) throws SQLException {
+        checkPolicy();
+        var boundary = keep > 0 ? findKeepBoundary(owner).orElse(Arrays.asList(null, null)) : null;
+        var chunkSelect = chunkSelect(owner, boundary);
+        return db.query("EXPLAIN " + chunkDeleteSql(chunkSelect.sql()), chunkSelect.parameters()).stream().map(row -> row.get(0)).toList();
+    }
+
+    // Selects the ids of the oldest rows of the owner that may be deleted, at most chunkSize of them
+    private record ChunkSelect(String sql, List<Object> parameters) {
+    }
+
+    private ChunkSelect chunkSelect(Object owner, List<Object> boundary) {
+        var conditions = new ArrayList<String>();
+        var parameters = new ArrayList<Object>();
+        if (ownerColumn != null) {
+            conditions.add(owner() + " = ?");
+            parameters.add(owner);
+        }
+        if (cutoff != null) {
+            conditions.add(order() + " < ?");
+            parameters.add(cutoff);
+        }
+        if (boundary != null) {
+            conditions.add("(" + order() + ", " + id() + ") < (?, ?)");
+            parameters.addAll(boundary);
+        }
+        parameters.add(chunkSize);
+        var sql = "SELECT " + id() + " FROM " + table() + "\nWHERE " + String.join(" AND ", conditions) + "\nORDER BY " + order() + ", " + id() + " LIMIT ?";
+        return new ChunkSelect(sql, parameters);
+    }
+
+    private String chunkDeleteSql(String chunkSelect) {
+        return "WITH chunk AS (\n" + chunkSelect + "\n), deleted AS (\n    DELETE FROM " + table() + " n USING chunk c WHERE n." + id() + " = c." + id() + " RETURNING n." + id()
+            + "\n)\nSELECT COUNT(*) FROM deleted;";
+    }
+
+    private long deleteChunk(ChunkSelect chunkSelect) throws Exception {
+        if (archive != null) {
+            return archive.deleteAndArchive(db, "WITH chunk AS (" + SqlLiterals.inline(chunkSelect.sql(), chunkSelect.parameters()) + ") DELETE FROM " + table() + " n USING chunk c WHERE n."
+                + id() + " = c." + id() + " RETURNING n.*");
+        }
+        return Long.parseLong(db.query(chunkDeleteSql(chunkSelect.sql()), chunkSelect.parameters()).get(0).get(0));
+    }
+
+    // The order and id values of the oldest row that is kept; all older rows may be deleted
+    private Optional<List<Object>> findKeepBoundary(Object owner) throws SQLException {
+        var sql = "SELECT " + order() + ", " + id() + " FROM " + table() + (ownerColumn == null ? "" : " WHERE " + owner() + " = ?")
+            + " ORDER BY " + order() + " DESC, " + id() + " DESC OFFSET ? LIMIT 1;";
+        var parameters = new ArrayList<Object>();
+        if (ownerColumn != null) {
+            parameters.add(owner);
+        }
+        parameters.add(keep - 1);
+        try (var rows = db.stream(sql, parameters, row -> Arrays.asList(row.getObject(1), row.getObject(2)))) {
+            return rows.findFirst();
+        }
+    }
+
+    private void checkPolicy() {
+        if (keep <= 0 && cutoff == null) {
+            throw new IllegalArgumentException("A retention policy needs a number of rows to keep or a cutoff, or both");
+        }
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1, now it was " + chunkSize);
+        }
+    }
+
+    private String table() {
+        return SqlLiterals.identifier(table);
+    }
+
+    private String id() {
+        return SqlLiterals.identifier(idColumn);
+    }
+
+    private String owner() {
+        if (ownerColumn == null) {
+            throw new IllegalStateException("No owner column configured for " + table);
+        }
+        return SqlLiterals.identifier(ownerColumn);
+    }
+
+    private String order() {
+        return SqlLiterals.identifier(orderColumn);
+    }
+}
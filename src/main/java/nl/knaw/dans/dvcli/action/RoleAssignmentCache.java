@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.action;
+
+import nl.knaw.dans.lib.dataverse.model.RoleAssignmentReadOnly;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the role assignments of targets for the duration of a run, so that they are listed only once per target, however many rows refer to that target. An action that changes the role
+ * assignments on the server must make the same change to the list it is given, so that the list stays in sync with the server. Actions for the same target are applied one at a time; actions for
+ * different targets may run at the same time.
+ */
+public class RoleAssignmentCache {
+    private final Map<String, List<RoleAssignmentReadOnly>> assignments = new ConcurrentHashMap<>();
+    private final Map<String, Object> locks = new ConcurrentHashMap<>();
+
+    /**
+     * Applies an action to the role assignments of a target, listing them first if that has not been done before.
+     *
+     * @param target the target, e.g. a collection alias or dataset PID
+     * @param lister lists the role assignments of the target; only called if they are not cached. If it fails, nothing is cached
+     * @param action the action, which may modify the list
+     * @param <R>    the type of the result
+     * @return the result of the action
+     * @throws Exception if listing the role assignments or the action fails
+     */
+    public <R> R withAssignments(String target, Callable<List<RoleAssignmentReadOnly>> lister, ThrowingFunction<List<RoleAssignmentReadOnly>, R, Exception> action) throws Exception {
+        synchronized (locks.computeIfAbsent(target, k -> new Object())) {
+            var list = assignments.get(target);
+            if (list == null) {
+                list = new ArrayList<>(lister.call());
+                assignments.put(target, list);
+            }
+            return action.apply(list);
+        }
+    }
+}
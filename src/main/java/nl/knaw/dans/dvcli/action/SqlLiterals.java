@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.action;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Helpers for statements that cannot have parameters, such as COPY. Only values of a few simple types are supported, which are written in a form that cannot change the meaning of the statement.
+ */
+public class SqlLiterals {
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    private SqlLiterals() {
+    }
+
+    /**
+     * Replaces each <code>?</code> in the statement with the corresponding value. The statement must not contain question marks in other places, such as string literals.
+     *
+     * @param sql        the statement
+     * @param parameters the values
+     * @return the statement with the values
+     * @throws IllegalArgumentException if a value has an unsupported type
+     */
+    public static String inline(String sql, List<?> parameters) {
+        var result = new StringBuilder();
+        int parameter = 0;
+        for (char c : sql.toCharArray()) {
+            if (c == '?') {
+                result.append(literal(parameters.get(parameter++)));
+            }
+            else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * @param value a number, timestamp, string or null
+     * @return the value as an SQL literal
+     * @throws IllegalArgumentException if the value has an unsupported type
+     */
+    public static String literal(Object value) {
+        if (value == null) {
+            return "NULL";
+        }
+        if (value instanceof Integer || value instanceof Long) {
+            return value.toString();
+        }
+        if (value instanceof Timestamp timestamp) {
+            return "'" + timestamp + "'::timestamp";
+        }
+        if (value instanceof String string) {
+            // Assumes standard_conforming_strings, the default since Postgres 9.1, so that backslashes have no special meaning
+            return "'" + string.replace("'", "''") + "'";
+        }
+        throw new IllegalArgumentException("Cannot put a value of type " + value.getClass().getSimpleName() + " into a statement");
+    }
+
+    /**
+     * Checks that a table or column name is a plain identifier, so that it can safely be put into a statement.
+     *
+     * @param name the name
+     * @return the name
+     * @throws IllegalArgumentException if the name is not a plain identifier
+     */
+    public static String identifier(String name) {
+        if (name == null || !IDENTIFIER.matcher(name).matches()) {
+            throw new IllegalArgumentException("Invalid table or column name: " + name);
+        }
+        return name;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.action;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The prepared statements of one connection, keyed by their SQL. When more than <code>maxSize</code> statements are cached, the least recently used one is closed. Like the connection itself, a
+ * cache must only be used by one thread at a time. The cache must be closed before its connection is closed, see {@link ConnectionPool}.
+ */
+@Slf4j
+class StatementCache {
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statements;
+
+    StatementCache(Connection connection, int maxSize) {
+        this.connection = connection;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > maxSize) {
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the prepared statement for the SQL, preparing it if it is not cached or was closed. The parameters and batch of a cached statement are cleared.
+     *
+     * @param sql the SQL, with <code>?</code> for the parameters
+     * @return the statement
+     * @throws SQLException if the statement cannot be prepared
+     */
+    PreparedStatement prepare(String sql) throws SQLException {
+        var statement = statements.get(sql);
+        if (statement != null && !statement.isClosed()) {
+            statement.clearParameters();
+            statement.clearBatch();
+            return statement;
+        }
+        log.debug("Preparing statement: {}", sql);
+        statement = connection.prepareStatement(sql);
+        statements.put(sql, statement);
+        return statement;
+    }
+
+    /**
+     * Closes all cached statements.
+     */
+    void close() {
+        statements.values().forEach(StatementCache::closeQuietly);
+        statements.clear();
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        }
+        catch (SQLException e) {
+            log.warn("Error closing prepared statement: {}", e.getMessage());
+        }
+    }
+}
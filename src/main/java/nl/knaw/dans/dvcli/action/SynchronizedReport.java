@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.action;
+
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+
+/**
+ * Makes a report safe to use from several threads. Reports are not required to be thread-safe, so the calls to the wrapped report are serialized.
+ *
+ * @param <I> the type of the item that was processed
+ * @param <R> the type of the result of the action
+ */
+@AllArgsConstructor
+public class SynchronizedReport<I, R> implements Report<I, R> {
+    @NonNull
+    private final Report<I, R> report;
+
+    @Override
+    public synchronized void reportSuccess(String label, I i, R r) {
+        report.reportSuccess(label, i, r);
+    }
+
+    @Override
+    public synchronized void reportFailure(String label, I i, Exception e) {
+        report.reportFailure(label, i, e);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.action;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Runs <code>VACUUM (ANALYZE)</code> on a table after a large delete, so that the space of the deleted rows can be reused and the planner statistics are up to date, and reports the effect.
+ */
+@AllArgsConstructor
+@Slf4j
+public class TableMaintenance {
+    private static final String STATS_SQL =
+        "SELECT pg_table_size(relid), pg_indexes_size(relid), n_live_tup, n_dead_tup FROM pg_stat_user_tables WHERE relname = ?;";
+
+    private final Database db;
+
+    /**
+     * Sizes and tuple counts of a table, as reported by Postgres. The tuple counts are estimates.
+     */
+    public record TableStats(long tableBytes, long indexBytes, long liveTuples, long deadTuples) {
+    }
+
+    /**
+     * @param table the name of the table
+     * @return the current statistics of the table
+     * @throws SQLException if the table does not exist or the query fails
+     */
+    public TableStats getStats(String table) throws SQLException {
+        List<List<String>> rows = db.query(STATS_SQL, List.of(SqlLiterals.identifier(table)));
+        if (rows.isEmpty()) {
+            throw new SQLException("No statistics found for table " + table);
+        }
+        var row = rows.get(0);
+        return new TableStats(Long.parseLong(row.get(0)), Long.parseLong(row.get(1)), Long.parseLong(row.get(2)), Long.parseLong(row.get(3)));
+    }
+
+    /**
+     * Vacuums and analyzes the table, and reports its statistics before and after.
+     *
+     * @param table the name of the table
+     * @return a report of the statistics before and after
+     * @throws SQLException if the statistics cannot be read or the vacuum fails
+     */
+    public String vacuumAnalyze(String table) throws SQLException {
+        var before = getStats(table);
+        log.info("Running VACUUM (ANALYZE) on {}", table);
+        long start = System.currentTimeMillis();
+        // VACUUM cannot run inside a transaction; the connections of the pool are in autocommit mode
+        db.update("VACUUM (ANALYZE) " + SqlLiterals.identifier(table));
+        long millis = System.currentTimeMillis() - start;
+        var after = getStats(table);
+        return String.format("VACUUM (ANALYZE) %s took %d ms%n"
+                + "  table size:  %s -> %s%n"
+                + "  index size:  %s -> %s%n"
+                + "  live tuples: %d -> %d%n"
+                + "  dead tuples: %d -> %d",
+            table, millis,
+            FileUtils.byteCountToDisplaySize(before.tableBytes()), FileUtils.byteCountToDisplaySize(after.tableBytes()),
+            FileUtils.byteCountToDisplaySize(before.indexBytes()), FileUtils.byteCountToDisplaySize(after.indexBytes()),
+            before.liveTuples(), after.liveTuples(),
+            before.deadTuples(), after.deadTuples());
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.action;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs tasks on a fixed number of threads, with a delay between the starts of the tasks. A caller that submits a task while all threads are busy waits until one of them is free, so tasks are
+ * never queued and a lazy source of tasks is not read ahead. With a parallelism of 1, the tasks are run in the calling thread, one after the other. Tasks must be submitted from one thread.
+ */
+@Slf4j
+public class ThrottledExecutor implements AutoCloseable {
+    private final long delay;
+    // Null if the tasks are run in the calling thread
+    private final ExecutorService executor;
+    private final Semaphore inFlight;
+    private boolean started = false;
+
+    /**
+     * @param parallelism the maximum number of tasks that run at the same time
+     * @param delay       the delay in milliseconds between the starts of tasks; a delay of 0 or less means no delay
+     */
+    public ThrottledExecutor(int parallelism, long delay) {
+        this.delay = delay;
+        this.executor = parallelism > 1 ? Executors.newFixedThreadPool(parallelism) : null;
+        this.inFlight = new Semaphore(Math.max(1, parallelism));
+    }
+
+    /**
+     * Runs a task, after the delay if it is not the first one, and as soon as a thread is free.
+     *
+     * @param task the task
+     */
+    public void execute(Runnable task) {
+        if (started) {
+            delay();
+        }
+        started = true;
+        if (executor == null) {
+            task.run();
+            return;
+        }
+        inFlight.acquireUninterruptibly();
+        executor.execute(() -> {
+            try {
+                task.run();
+            }
+            finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    /**
+     * Waits for the tasks that are still running to finish.
+     */
+    @Override
+    public void close() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.debug("Waiting for the last tasks to finish");
+            }
+        }
+        catch (InterruptedException e) {
+            log.error("Interrupted while waiting for tasks to finish", e);
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void delay() {
+        if (delay > 0) {
+            log.debug("Sleeping for {} ms", delay);
+            try {
+                Thread.sleep(delay);
+            }
+            catch (InterruptedException e) {
+                log.error("Sleep interrupted", e);
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
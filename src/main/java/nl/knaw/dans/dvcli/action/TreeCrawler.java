@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.action;
+
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Crawls a tree breadth-first, visiting up to <code>parallelism</code> nodes at the same time. Each node is reported as soon as it has been visited. Nodes that were seen before are skipped. The
+ * frontier of discovered nodes that have not been visited yet is bounded by <code>maxFrontierSize</code>; when it is full, a discovered node is queued locally and visited by the thread that
+ * discovered it, so that the crawl never blocks on a full frontier. The local queue is handed back to the frontier as soon as there is room again, and it is worked off in a loop rather than by
+ * recursion, so that a deep tree cannot overflow the stack.
+ *
+ * @param <N> the type of the nodes
+ */
+@Builder
+@Slf4j
+public class TreeCrawler<N> {
+    /**
+     * The result of visiting a node.
+     *
+     * @param result   the result to report
+     * @param children the children of the node, labeled with their keys; a node is visited only once per key
+     * @param <N>      the type of the nodes
+     */
+    public record Visit<N>(String result, List<Pair<String, N>> children) {
+    }
+
+    private record Node<N>(String key, String label, N node, int depth) {
+    }
+
+    /**
+     * Visits a node.
+     */
+    @NonNull
+    private final ThrowingFunction<N, Visit<N>, Exception> visitor;
+
+    /**
+     * Gives the key of a root node, in the same form as the keys of the children that the visitor returns, so that a root that is also a descendant of another root is visited only once. If
+     * null, the label of a root is used as its key.
+     */
+    private final ThrowingFunction<N, String, Exception> rootKey;
+
+    /**
+     * The report to which the results of the visits are reported. The label of a node is the path of keys from the root to the node.
+     */
+    @Builder.Default
+    private final Report<N, String> report = new ConsoleReport<>();
+
+    /**
+     * The maximum number of nodes that are visited at the same time.
+     */
+    @Builder.Default
+    private final int parallelism = 1;
+
+    /**
+     * The maximum depth to visit; the roots have depth 0. A negative number means no limit.
+     */
+    @Builder.Default
+    private final int maxDepth = -1;
+
+    /**
+     * The maximum number of discovered nodes waiting to be visited.
+     */
+    @Builder.Default
+    private final int maxFrontierSize = 10000;
+
+    /**
+     * The delay in milliseconds between the starts of visits. A delay of 0 or less means no delay.
+     */
+    @Builder.Default
+    private final long delay = 0;
+
+    /**
+     * Crawls the trees below the given roots.
+     *
+     * @param roots the roots, labeled; the labels are also the keys, unless a <code>rootKey</code> function is given
+     * @return the number of nodes that were visited
+     */
+    public int crawl(List<Pair<String, N>> roots) {
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        BlockingQueue<Node<N>> frontier = new ArrayBlockingQueue<>(Math.max(maxFrontierSize, roots.size()));
+        // Nodes that are in the frontier or being visited; the crawl is done when there are none left
+        AtomicInteger pending = new AtomicInteger();
+        AtomicInteger visited = new AtomicInteger();
+        var serializedReport = new SynchronizedReport<>(report);
+        for (var root : roots) {
+            String key;
+            try {
+                key = rootKey == null ? root.getFirst() : rootKey.apply(root.getSecond());
+            }
+            catch (Exception e) {
+                serializedReport.reportFailure(root.getFirst(), root.getSecond(), e);
+                continue;
+            }
+            if (seen.add(key)) {
+                pending.incrementAndGet();
+                frontier.add(new Node<>(key, root.getFirst(), root.getSecond(), 0));
+            }
+        }
+        try (var executor = new ThrottledExecutor(parallelism, delay)) {
+            while (pending.get() > 0) {
+                var node = frontier.poll(100, TimeUnit.MILLISECONDS);
+                if (node == null) {
+                    continue;
+                }
+                visited.incrementAndGet();
+                executor.execute(() -> visit(node, frontier, seen, pending, visited, serializedReport));
+            }
+        }
+        catch (InterruptedException e) {
+            log.error("Interrupted while crawling", e);
+            Thread.currentThread().interrupt();
+        }
+        return visited.get();
+    }
+
+    private void visit(Node<N> node, BlockingQueue<Node<N>> frontier, Set<String> seen, AtomicInteger pending, AtomicInteger visited, Report<N, String> report) {
+        Deque<Node<N>> overflow = new ArrayDeque<>();
+        visitOne(node, frontier, seen, pending, overflow, report);
+        Node<N> next;
+        while ((next = overflow.poll()) != null) {
+            // If there is room in the frontier again, another thread may visit the node
+            if (frontier.offer(next)) {
+                continue;
+            }
+            visited.incrementAndGet();
+            visitOne(next, frontier, seen, pending, overflow, report);
+        }
+    }
+
+    private void visitOne(Node<N> node, BlockingQueue<Node<N>> frontier, Set<String> seen, AtomicInteger pending, Deque<Node<N>> overflow, Report<N, String> report) {
+        try {
+            log.info("Visiting {} (depth {})", node.label(), node.depth());
+            var visit = visitor.apply(node.node());
+            report.reportSuccess(node.label(), node.node(), visit.result());
+            if (maxDepth >= 0 && node.depth() >= maxDepth) {
+                return;
+            }
+            for (var child : visit.children()) {
+                if (seen.add(child.getFirst())) {
+                    var childNode = new Node<>(child.getFirst(), node.label() + "/" + child.getFirst(), child.getSecond(), node.depth() + 1);
+                    pending.incrementAndGet();
+                    if (!frontier.offer(childNode)) {
+                        log.debug("Frontier full, visiting {} in this thread", childNode.label());
+                        overflow.add(childNode);
+                    }
+                }
+            }
+        }
+        catch (Exception e) {
+            report.reportFailure(node.label(), node.node(), e);
+        }
+        finally {
+            pending.decrementAndGet();
+        }
+    }
+}
@@ -15,7 +15,11 @@
  */
 package nl.knaw.dans.dvcli.command;
 
+import nl.knaw.dans.dvcli.action.ConsoleReport;
+import nl.knaw.dans.dvcli.action.LabelGrouper;
+import nl.knaw.dans.dvcli.action.OrderedWorkUnitAction;
 import nl.knaw.dans.dvcli.action.Pair;
+import nl.knaw.dans.dvcli.action.ThrowingFunction;
 import nl.knaw.dans.lib.dataverse.model.RoleAssignment;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
@@ -52,6 +56,11 @@ public abstract class AbstractRoleAssignmentSubcommand<C extends AbstractSubcomm
     @ArgGroup(multiplicity = "1")
     CommandParameter commandParameter;
 
+    @Option(names = { "--group-lookahead" }, description = "Process all rows for the same target as one work unit. Rows for a target are merged as long as no more than this number of other "
+        + "targets occur in between, so the file does not need to be sorted. Sort the file by target to merge all rows of a target. 0 means no grouping (default: ${DEFAULT-VALUE}).",
+            defaultValue = "0")
+    int groupLookahead = 0;
+
     private Optional<RoleAssignment> readFromCommandLine() {
         if (!this.commandParameter.assignment.isEmpty() && this.commandParameter.assignment.contains("=")) {
             String[] assigneeRole = this.commandParameter.assignment.split("=");
@@ -80,7 +89,7 @@ public abstract class AbstractRoleAssignmentSubcommand<C extends AbstractSubcomm
                 roleAssignment.setAssignee(csvRecord.get("ASSIGNEE"));
                 roleAssignment.setRole(csvRecord.get("ROLE"));
 
-                RoleAssignmentParams<A> params = new RoleAssignmentParams<>(api, Optional.of(roleAssignment));
+                RoleAssignmentParams<A> params = new RoleAssignmentParams<>(pid, api, Optional.of(roleAssignment));
                 result.add(new Pair<>(pid, params));
             }
 
@@ -98,7 +107,7 @@ public abstract class AbstractRoleAssignmentSubcommand<C extends AbstractSubcomm
             var items = cmd.getItems();
             return items.stream()
                 .map(p -> {
-                    var second = new RoleAssignmentParams<A>((A) p.getSecond(), readFromCommandLine());
+                    var second = new RoleAssignmentParams<A>(p.getFirst(), (A) p.getSecond(), readFromCommandLine());
                     return new Pair<>(p.getFirst(), second);
                 })
                 .toList();
@@ -106,6 +115,40 @@ public abstract class AbstractRoleAssignmentSubcommand<C extends AbstractSubcomm
         return List.of();
     }
 
-    protected record RoleAssignmentParams<A>(A pid, Optional<RoleAssignment> roleAssignment) {
+    /**
+     * Applies the action to each role assignment, reporting the results to the console. If grouping is enabled, the role assignments for one target are processed as one work unit, in the order in
+     * which they appear in the input.
+     *
+     * @param cmd    the subcommand container
+     * @param action the action to apply to each role assignment
+     * @throws IOException if the parameters cannot be read
+     */
+    protected void processRoleAssignments(C cmd, ThrowingFunction<RoleAssignmentParams<A>, String, Exception> action) throws IOException {
+        var params = getRoleAssignmentParams(cmd);
+        if (groupLookahead > 0) {
+            cmd.<List<RoleAssignmentParams<A>>> paramsBatchProcessorBuilder()
+                .labeledItems(new LabelGrouper<RoleAssignmentParams<A>>(groupLookahead).group(params.stream()))
+                .action(new OrderedWorkUnitAction<>(action))
+                .report(new ConsoleReport<>())
+                .build()
+                .process();
+        }
+        else {
+            cmd.<RoleAssignmentParams<A>> paramsBatchProcessorBuilder()
+                .labeledItems(params)
+                .action(action)
+                .report(new ConsoleReport<>())
+                .build()
+                .process();
+        }
+    }
+
+    /**
+     * @param target         the ID of the target, as it appears in the input
+     * @param pid            the API object for the target
+     * @param roleAssignment the role assignment to add or remove
+     * @param <A>            the type of the API object
+     */
+    protected record RoleAssignmentParams<A>(String target, A pid, Optional<RoleAssignment> roleAssignment) {
     }
 }
@@ -17,7 +17,9 @@ package nl.knaw.dans.dvcli.command;
 
 import lombok.Getter;
 import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
 import nl.knaw.dans.dvcli.action.BatchProcessor;
+import nl.knaw.dans.dvcli.action.HttpConnectionPool;
 import nl.knaw.dans.dvcli.action.Pair;
 import nl.knaw.dans.dvcli.action.SingleIdOrIdsFile;
 import nl.knaw.dans.dvcli.action.ThrowingFunction;
@@ -33,14 +35,26 @@ import java.util.List;
  *
  * @param <T>
  */
+@Slf4j
 public abstract class AbstractSubcommandContainer<T> extends AbstractCmd {
     private static final long DEFAULT_DELAY = 1000;
 
     @Getter
     protected DataverseClient dataverseClient;
 
+    private final HttpConnectionPool httpConnectionPool;
+
     public AbstractSubcommandContainer(@NonNull DataverseClient dataverseClient) {
+        this(dataverseClient, null);
+    }
+
+    /**
+     * @param dataverseClient    the client to use
+     * @param httpConnectionPool the pool that the client sends its requests over; if not null, connections are pre-warmed at the start of a batch and the pool statistics are logged at the end
+     */
+    public AbstractSubcommandContainer(@NonNull DataverseClient dataverseClient, HttpConnectionPool httpConnectionPool) {
         this.dataverseClient = dataverseClient;
+        this.httpConnectionPool = httpConnectionPool;
     }
 
     @Parameters(index = "0", description = "The target(s) of the operation; this is either an ID a file with a with a list of IDs, or - if the subcommand supports it - a parameters file.",
@@ -49,17 +63,29 @@ public abstract class AbstractSubcommandContainer<T> extends AbstractCmd {
     private String targets;
 
     @Option(names = { "-d", "--delay" }, description = "Delay in milliseconds between requests to the server (default: ${DEFAULT-VALUE}).", defaultValue = "" + DEFAULT_DELAY)
+    @Getter
     protected long delay;
 
+    @Option(names = { "--parallel" }, description = "Number of targets that are processed at the same time (default: ${DEFAULT-VALUE}). The delay is then applied between the starts of the "
+        + "requests.", defaultValue = "1")
+    @Getter
+    protected int parallel = 1;
+
     public BatchProcessor.BatchProcessorBuilder<T, String> batchProcessorBuilder() throws IOException {
         return BatchProcessor.<T, String> builder()
             .labeledItems(getItems())
-            .delay(delay);
+            .delay(delay)
+            .parallelism(parallel)
+            .onStart(this::prewarmConnections)
+            .onFinish(this::logConnectionStatistics);
     }
 
     public <P> BatchProcessor.BatchProcessorBuilder<P, String> paramsBatchProcessorBuilder() {
         return BatchProcessor.<P, String> builder()
-            .delay(delay);
+            .delay(delay)
+            .parallelism(parallel)
+            .onStart(this::prewarmConnections)
+            .onFinish(this::logConnectionStatistics);
     }
 
     protected abstract List<Pair<String, T>> getItems() throws IOException;
@@ -72,7 +98,31 @@ public abstract class AbstractSubcommandContainer<T> extends AbstractCmd {
         return BatchProcessor.<T, String> builder()
             .labeledItems(getItems())
             .delay(delay)
+            .parallelism(parallel)
+            .onStart(this::prewarmConnections)
+            .onFinish(this::logConnectionStatistics)
             .action(action)
             .build();
     }
+
+    /**
+     * Lets the Dataverse client answer GET requests from the on-disk response cache, if that is enabled in the configuration. To be called by read-only commands before they send their requests.
+     */
+    public void enableResponseCache() {
+        if (httpConnectionPool != null) {
+            httpConnectionPool.enableResponseCache();
+        }
+    }
+
+    private void prewarmConnections(int parallelism) {
+        if (httpConnectionPool != null) {
+            httpConnectionPool.prewarm(parallelism);
+        }
+    }
+
+    private void logConnectionStatistics() {
+        if (httpConnectionPool != null) {
+            log.info(httpConnectionPool.getStatistics());
+        }
+    }
 }
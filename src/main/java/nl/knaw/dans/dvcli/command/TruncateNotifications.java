@@ -15,19 +15,37 @@
  */
 package nl.knaw.dans.dvcli.command;
 
+import lombok.AllArgsConstructor;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import nl.knaw.dans.dvcli.action.BatchProcessor;
 import nl.knaw.dans.dvcli.action.ConsoleReport;
 import nl.knaw.dans.dvcli.action.Database;
+import nl.knaw.dans.dvcli.action.DeleteArchive;
 import nl.knaw.dans.dvcli.action.Pair;
+import nl.knaw.dans.dvcli.action.RateLimiter;
+import nl.knaw.dans.dvcli.action.RetentionEngine;
+import nl.knaw.dans.dvcli.action.SqlLiterals;
+import nl.knaw.dans.dvcli.action.TableMaintenance;
 import nl.knaw.dans.dvcli.action.ThrowingFunction;
 import picocli.CommandLine;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 @CommandLine.Command(name = "truncate-notifications",
                      mixinStandardHelpOptions = true,
@@ -46,6 +64,59 @@ public class TruncateNotifications extends AbstractCmd {
     @CommandLine.Option(names = { "-d", "--delay" }, description = "Delay in milliseconds between requests to the server (default: ${DEFAULT-VALUE}).", defaultValue = "" + DEFAULT_DELAY)
     protected long delay = DEFAULT_DELAY;
 
+    @CommandLine.Option(names = { "--parallel" }, description = "Number of users whose notifications are truncated at the same time, each over its own database connection. "
+        + "Is limited by the maxConnections setting of the database configuration (default: ${DEFAULT-VALUE}).", defaultValue = "1")
+    protected int parallel = 1;
+
+    @CommandLine.Option(names = { "--batch-size" }, description = "Number of users whose delete statements are sent to the database in one round trip. The delay applies between "
+        + "batches (default: ${DEFAULT-VALUE}).", defaultValue = "1")
+    protected int batchSize = 1;
+
+    @CommandLine.Option(names = { "--set-based" }, description = "Rank the notifications of all selected users once in the database, store the ids of the excess ones in the "
+        + "work table dvcli_excess_notification_<random>, and delete them in chunks, instead of sending a statement per user. Each run has its own work table, so runs "
+        + "do not interfere with each other. The work table is dropped afterwards; a run that is killed leaves it behind, and it can then be dropped by hand.")
+    protected boolean setBased;
+
+    @CommandLine.Option(names = { "--partitions" }, description = "With --set-based, split the notifications to delete into this number of equal ranges and delete "
+        + "the ranges at the same time, each over its own database connection. Should not be more than the maxConnections setting of the database configuration "
+        + "(default: ${DEFAULT-VALUE}).", defaultValue = "1")
+    protected int partitions = 1;
+
+    @CommandLine.Option(names = { "--max-rows-per-second" }, description = "With --set-based, --chunked or --older-than, the maximum number of notifications to delete per second, over all "
+        + "partitions or parallel users together. The limit is applied to the rows actually deleted by each statement. "
+        + "0 means no limit (default: ${DEFAULT-VALUE}).", defaultValue = "0")
+    protected int maxRowsPerSecond = 0;
+
+    @CommandLine.Option(names = { "--chunk-size" }, description = "Maximum number of notifications to delete in one statement (default: ${DEFAULT-VALUE}).", defaultValue = "10000")
+    protected int chunkSize = 10000;
+
+    @CommandLine.Option(names = { "--chunked" }, description = "Delete the notifications of each user in chunks of --chunk-size records, from old to new. Each chunk is committed "
+        + "separately, so locks are held only briefly, and an interrupted run can simply be started again.")
+    protected boolean chunked;
+
+    @CommandLine.Option(names = { "--chunk-delay" }, description = "Delay in milliseconds between chunks (default: ${DEFAULT-VALUE}).", defaultValue = "" + DEFAULT_DELAY)
+    protected long chunkDelay = DEFAULT_DELAY;
+
+    @CommandLine.Option(names = { "--older-than" }, description = "Only delete notifications that are older than this, e.g. '180d' or '12 hours'. The newest "
+        + "number-of-records-to-keep notifications of each user are always kept. The notifications are deleted per user in chunks of --chunk-size records, from old to new.",
+                        converter = DurationConverter.class)
+    protected Duration olderThan;
+
+    @CommandLine.Option(names = { "--archive" }, description = "With --chunked or --older-than, write the notifications to this CSV file before they are deleted. Each chunk is "
+        + "written and deleted in one transaction. If the name ends with '.gz', the file is compressed with gzip. An existing file is appended to, so that an "
+        + "interrupted run can be started again with the same archive.")
+    protected Path archiveFile;
+
+    @CommandLine.Option(names = { "--vacuum" }, description = "After deleting, run VACUUM (ANALYZE) on the notification table and report its size and dead tuples before and after.")
+    protected boolean vacuum;
+
+    @CommandLine.Option(names = { "--dry-run" }, description = "Do not delete anything, but report how many notifications would be deleted, in total and for the users with the most "
+        + "deletable notifications, and show the query plan of the delete statement.")
+    protected boolean dryRun;
+
+    @CommandLine.Option(names = { "--top" }, description = "Number of users to list in a dry run (default: ${DEFAULT-VALUE}).", defaultValue = "20")
+    protected int top = 20;
+
     @CommandLine.ArgGroup(exclusive = true, multiplicity = "1")
     UserOptions users;
 
@@ -64,6 +135,12 @@ public class TruncateNotifications extends AbstractCmd {
                             description = "The number of notification records to keep.")
     private int numberOfRecordsToKeep;
 
+    // Notifications sent before this moment are deleted, if --older-than is given
+    private Timestamp cutoff;
+
+    // The deleted notifications are written to this, if --archive is given
+    private DeleteArchive archive;
+
     private record NotificationTruncateParams(Database db, int userId, int numberOfRecordsToKeep) {
     }
 
@@ -71,17 +148,84 @@ public class TruncateNotifications extends AbstractCmd {
         return BatchProcessor.<TruncateNotifications.NotificationTruncateParams, String> builder();
     }
 
+    private static final String DELETE_NOTIFICATIONS_SQL =
+        "DELETE FROM usernotification WHERE user_id = ? AND id NOT IN (SELECT id FROM usernotification WHERE user_id = ? ORDER BY senddate DESC LIMIT ?);";
+
+    private static List<Object> deleteNotificationsParameters(NotificationTruncateParams params) {
+        return List.of(params.userId, params.userId, params.numberOfRecordsToKeep);
+    }
+
+    // The excess notifications are ranked once and their ids are stored in a work table, numbered 1, 2, ... by seq, so that chunks can be taken from it by range. Each run gets a table of
+    // its own, so that a concurrent run cannot drop or refill it; the %s in the statements below is the name of the table.
+    private static final String EXCESS_TABLE_PREFIX = "dvcli_excess_notification_";
+
+    private static final String DROP_EXCESS_TABLE_SQL = "DROP TABLE IF EXISTS %s;";
+
+    // The notifications of each user after the newest ? ones, numbered in order of id
+    private static final String EXCESS_SELECT_SQL = """
+        SELECT ROW_NUMBER() OVER (ORDER BY id) AS seq, id
+        FROM (
+            SELECT id, ROW_NUMBER() OVER (PARTITION BY user_id ORDER BY senddate DESC, id DESC) AS rank
+            FROM usernotification
+            %s
+        ) ranked
+        WHERE rank > ?""";
+
+    // The second %s is the filter of EXCESS_SELECT_SQL
+    private static final String CREATE_EXCESS_TABLE_SQL = "CREATE UNLOGGED TABLE %s AS\n" + EXCESS_SELECT_SQL + ";";
+
+    private static final String INDEX_EXCESS_TABLE_SQL = "ALTER TABLE %s ADD PRIMARY KEY (seq);";
+
+    private static final String EXCESS_COUNT_SQL = "SELECT COALESCE(MAX(seq), 0) FROM %s;";
+
+    // Deletes the excess notifications with a seq in the range (?, ?], and returns the number of deleted rows per user
+    private static final String SET_BASED_DELETE_SQL = "WITH deleted AS (\n    DELETE FROM usernotification n USING %s e\n" + """
+            WHERE e.seq > ? AND e.seq <= ? AND n.id = e.id
+            RETURNING n.user_id
+        )
+        SELECT user_id, COUNT(*) FROM deleted GROUP BY user_id;""";
+
+    private static final String USERS_WITH_OLD_NOTIFICATIONS_SQL =
+        "SELECT user_id FROM usernotification GROUP BY user_id HAVING COUNT(user_id) > ? AND MIN(senddate) < ?;";
+
+    private static final String SENDDATE_INDEXES_SQL =
+        "SELECT indexdef FROM pg_indexes WHERE tablename = 'usernotification' AND indexdef LIKE '%(user_id, senddate%';";
+
+    // The number of notifications that would be deleted per user, most first
+    private static final String DELETABLE_OLD_COUNTS_SQL = """
+        SELECT user_id, COUNT(*) AS deletable
+        FROM (
+            SELECT user_id, senddate, ROW_NUMBER() OVER (PARTITION BY user_id ORDER BY senddate DESC, id DESC) AS rank
+            FROM usernotification
+            %s
+        ) ranked
+        WHERE rank > ? AND senddate < ?
+        GROUP BY user_id
+        ORDER BY deletable DESC, user_id;""";
+
+    // The number of notifications that would be deleted per user, most first
+    private static final String DELETABLE_COUNTS_SQL = """
+        SELECT user_id, COUNT(*) - ? AS deletable
+        FROM usernotification
+        %s
+        GROUP BY user_id HAVING COUNT(*) > ?
+        ORDER BY deletable DESC, user_id;""";
+
+    record DeletableCount(int userId, long count) {
+    }
+
+    private static String deletedMessage(long rowCount, int userId) {
+        return "Deleted " + rowCount + " record(s) for user with id " + userId;
+    }
+
     private static class NotificationTruncateAction implements ThrowingFunction<TruncateNotifications.NotificationTruncateParams, String, Exception> {
 
         @Override
         public String apply(NotificationTruncateParams notificationTruncateParams) throws Exception {
             try {
                 log.info("Deleting notifications for user with id {}", notificationTruncateParams.userId);
-                int rowCount = notificationTruncateParams.db.update(
-                    String.format("DELETE FROM usernotification WHERE user_id = '%d' AND id NOT IN (SELECT id FROM usernotification WHERE user_id = '%d' ORDER BY senddate DESC LIMIT %d);",
-                        notificationTruncateParams.userId, notificationTruncateParams.userId,
-                        notificationTruncateParams.numberOfRecordsToKeep));
-                return "Deleted " + rowCount + " record(s) for user with id " + notificationTruncateParams.userId;
+                int rowCount = notificationTruncateParams.db.update(DELETE_NOTIFICATIONS_SQL, deleteNotificationsParameters(notificationTruncateParams));
+                return deletedMessage(rowCount, notificationTruncateParams.userId);
             }
             catch (SQLException e) {
                 throw new Exception("Error deleting notifications for user with id " + notificationTruncateParams.userId, e);
@@ -89,28 +233,371 @@ public class TruncateNotifications extends AbstractCmd {
         }
     }
 
+    @AllArgsConstructor
+    private static class RetentionNotificationTruncateAction implements ThrowingFunction<TruncateNotifications.NotificationTruncateParams, String, Exception> {
+        private final RetentionEngine engine;
+
+        @Override
+        public String apply(NotificationTruncateParams params) throws Exception {
+            try {
+                log.info("Deleting notifications for user with id {} in chunks", params.userId);
+                return deletedMessage(engine.apply(params.userId).deleted(), params.userId);
+            }
+            catch (SQLException e) {
+                throw new Exception("Error deleting notifications for user with id " + params.userId, e);
+            }
+        }
+    }
+
+    private static class BatchedNotificationTruncateAction implements ThrowingFunction<List<NotificationTruncateParams>, String, Exception> {
+
+        @Override
+        public String apply(List<NotificationTruncateParams> batch) throws Exception {
+            var userIds = batch.stream().map(NotificationTruncateParams::userId).toList();
+            try {
+                log.info("Deleting notifications for users with ids {}", userIds);
+                int[] rowCounts = batch.get(0).db.executeBatch(DELETE_NOTIFICATIONS_SQL,
+                    batch.stream().map(TruncateNotifications::deleteNotificationsParameters).toList(), batch.size());
+                var messages = new ArrayList<String>();
+                for (int i = 0; i < batch.size(); i++) {
+                    messages.add(deletedMessage(rowCounts[i], userIds.get(i)));
+                }
+                return String.join("\n", messages);
+            }
+            catch (SQLException e) {
+                throw new Exception("Error deleting notifications for users with ids " + userIds, e);
+            }
+        }
+    }
+
     @Override
     public void doCall() throws Exception {
         // validate input
         if (numberOfRecordsToKeep < 0) {
             throw new Exception("Number of records to keep must be a positive integer, now it was " + numberOfRecordsToKeep + ".");
         }
+        if (parallel < 1) {
+            throw new Exception("Number of parallel truncations must be at least 1, now it was " + parallel + ".");
+        }
+        if (batchSize < 1) {
+            throw new Exception("Batch size must be at least 1, now it was " + batchSize + ".");
+        }
+        if (chunked && (setBased || batchSize > 1)) {
+            throw new Exception("Option --chunked cannot be combined with --set-based or --batch-size.");
+        }
+        if (olderThan != null && (setBased || chunked || batchSize > 1)) {
+            throw new Exception("Option --older-than cannot be combined with --set-based, --chunked or --batch-size.");
+        }
+        if (olderThan != null && (olderThan.isNegative() || olderThan.isZero())) {
+            throw new Exception("Age must be positive, now it was " + olderThan + ".");
+        }
+        if (partitions < 1) {
+            throw new Exception("Number of partitions must be at least 1, now it was " + partitions + ".");
+        }
+        if (partitions > 1 && !setBased) {
+            throw new Exception("Option --partitions requires --set-based.");
+        }
+        if (maxRowsPerSecond < 0) {
+            throw new Exception("Maximum rows per second must not be negative, now it was " + maxRowsPerSecond + ".");
+        }
+        if (maxRowsPerSecond > 0 && !(setBased || chunked || olderThan != null)) {
+            throw new Exception("Option --max-rows-per-second requires --set-based, --chunked or --older-than.");
+        }
+        if (archiveFile != null && !(chunked || olderThan != null)) {
+            throw new Exception("Option --archive requires --chunked or --older-than.");
+        }
+        if (top < 0) {
+            throw new Exception("Number of users to list must not be negative, now it was " + top + ".");
+        }
+        if (chunkSize < 1) {
+            throw new Exception("Chunk size must be at least 1, now it was " + chunkSize + ".");
+        }
 
         db.connect();
         try {
-            paramsBatchProcessorBuilder()
-                .labeledItems(getItems())
-                .action(new TruncateNotifications.NotificationTruncateAction())
-                .delay(delay)
-                .report(new ConsoleReport<>())
-                .build()
-                .process();
+            if (olderThan != null) {
+                cutoff = Timestamp.from(Instant.now().minus(olderThan));
+                checkSenddateIndex();
+            }
+            if (dryRun) {
+                reportDryRun();
+            }
+            else if (archiveFile != null) {
+                try (var openedArchive = DeleteArchive.open(archiveFile)) {
+                    archive = openedArchive;
+                    processPerUser();
+                }
+                finally {
+                    archive = null;
+                }
+            }
+            else if (setBased) {
+                truncateSetBased();
+            }
+            else if (batchSize > 1) {
+                BatchProcessor.<List<NotificationTruncateParams>, String> builder()
+                    .labeledItems(toBatches(getItems()))
+                    .action(new BatchedNotificationTruncateAction())
+                    .delay(delay)
+                    .parallelism(parallel)
+                    .report(new ConsoleReport<>())
+                    .build()
+                    .process();
+            }
+            else {
+                processPerUser();
+            }
+            if (vacuum && !dryRun) {
+                System.out.println(new TableMaintenance(db).vacuumAnalyze("usernotification"));
+            }
         }
         finally {
             db.close();
         }
     }
 
+    private void processPerUser() throws Exception {
+        paramsBatchProcessorBuilder()
+            .labeledItems(getItems())
+            .action(getPerUserAction())
+            .delay(delay)
+            .parallelism(parallel)
+            .report(new ConsoleReport<>())
+            .build()
+            .process();
+    }
+
+    private void truncateSetBased() throws Exception {
+        var rateLimiter = maxRowsPerSecond > 0 ? new RateLimiter(maxRowsPerSecond) : null;
+        Map<Integer, Long> deletedPerUser = new TreeMap<>();
+        var excessTable = EXCESS_TABLE_PREFIX + UUID.randomUUID().toString().replace("-", "");
+        try {
+            long excess = createExcessTable(excessTable);
+            log.info("Found {} notification(s) to delete", excess);
+            if (partitions > 1) {
+                // Each partition gets a thread and an equal range of the work table, and takes its own connection from the pool for each chunk
+                ExecutorService executor = Executors.newFixedThreadPool(partitions);
+                try {
+                    List<Future<Map<Integer, Long>>> results = new ArrayList<>();
+                    for (int i = 0; i < partitions; i++) {
+                        var partition = i;
+                        results.add(executor.submit(() -> deleteExcessInChunks(excessTable, " of partition " + partition,
+                            excess * partition / partitions, excess * (partition + 1) / partitions, rateLimiter)));
+                    }
+                    for (var result : results) {
+                        try {
+                            result.get().forEach((userId, count) -> deletedPerUser.merge(userId, count, Long::sum));
+                        }
+                        catch (ExecutionException e) {
+                            throw e.getCause() instanceof Exception cause ? cause : e;
+                        }
+                    }
+                }
+                finally {
+                    executor.shutdownNow();
+                }
+            }
+            else {
+                deletedPerUser.putAll(deleteExcessInChunks(excessTable, "", 0, excess, rateLimiter));
+            }
+        }
+        finally {
+            db.update(String.format(DROP_EXCESS_TABLE_SQL, excessTable));
+        }
+
+        var report = new ConsoleReport<Integer, String>();
+        deletedPerUser.forEach((userId, count) -> report.reportSuccess(Integer.toString(userId), userId, "Deleted " + count + " record(s) for user with id " + userId));
+        log.info("Deleted {} record(s) for {} user(s)", deletedPerUser.values().stream().mapToLong(Long::longValue).sum(), deletedPerUser.size());
+    }
+
+    // Ranks the notifications once and stores the ids of the excess ones in the work table; returns their number
+    private long createExcessTable(String excessTable) throws SQLException {
+        // CREATE TABLE AS cannot have parameters, so the values, which are all numbers, are put into the statement
+        db.update(SqlLiterals.inline(String.format(CREATE_EXCESS_TABLE_SQL, excessTable, excessFilter()), excessParameters(users.user)));
+        db.update(String.format(INDEX_EXCESS_TABLE_SQL, excessTable));
+        return Long.parseLong(db.query(String.format(EXCESS_COUNT_SQL, excessTable), List.of()).get(0).get(0));
+    }
+
+    private String excessFilter() {
+        return users.allUsers ? "" : "WHERE user_id = ?";
+    }
+
+    private List<Object> excessParameters(int userId) {
+        return users.allUsers ? List.of(numberOfRecordsToKeep) : List.of(userId, numberOfRecordsToKeep);
+    }
+
+    // Deletes the excess notifications with a seq in the range (from, to], in chunks of consecutive seq values
+    private Map<Integer, Long> deleteExcessInChunks(String excessTable, String partitionLabel, long from, long to, RateLimiter rateLimiter) throws Exception {
+        var deleteSql = String.format(SET_BASED_DELETE_SQL, excessTable);
+        Map<Integer, Long> deletedPerUser = new HashMap<>();
+        int chunk = 0;
+        for (long start = from; start < to; start += chunkSize) {
+            if (chunk > 0 && chunkDelay > 0) {
+                log.debug("Sleeping for {} ms", chunkDelay);
+                Thread.sleep(chunkDelay);
+            }
+            chunk++;
+            long deletedInChunk = 0;
+            try {
+                for (List<String> row : db.query(deleteSql, List.of(start, Math.min(start + chunkSize, to)))) {
+                    long count = Long.parseLong(row.get(1));
+                    deletedPerUser.merge(Integer.parseInt(row.get(0)), count, Long::sum);
+                    deletedInChunk += count;
+                }
+            }
+            catch (SQLException e) {
+                throw new Exception("Error deleting notifications in chunk " + chunk + partitionLabel, e);
+            }
+            if (rateLimiter != null) {
+                // Rows deleted by another process in the meantime are not in the result, so they do not count
+                rateLimiter.acquire(deletedInChunk);
+            }
+            log.info("Deleted {} record(s) in chunk {}{}", deletedInChunk, chunk, partitionLabel);
+        }
+        return deletedPerUser;
+    }
+
+    private ThrowingFunction<NotificationTruncateParams, String, Exception> getPerUserAction() {
+        if (cutoff != null || chunked) {
+            return new RetentionNotificationTruncateAction(retentionEngine());
+        }
+        return new TruncateNotifications.NotificationTruncateAction();
+    }
+
+    // The same engine deletes the chunks with --older-than and with --chunked; without an age limit only the newest number-of-records-to-keep notifications count
+    private RetentionEngine retentionEngine() {
+        var engineCutoff = cutoff;
+        if (engineCutoff == null && numberOfRecordsToKeep == 0) {
+            // Keeping nothing means deleting every notification that exists when the command starts
+            engineCutoff = Timestamp.from(Instant.now());
+        }
+        return RetentionEngine.builder()
+            .db(db)
+            .table("usernotification")
+            .ownerColumn("user_id")
+            .orderColumn("senddate")
+            .keep(numberOfRecordsToKeep)
+            .cutoff(engineCutoff)
+            .chunkSize(chunkSize)
+            .chunkDelay(chunkDelay)
+            .rateLimiter(maxRowsPerSecond > 0 ? new RateLimiter(maxRowsPerSecond) : null)
+            .archive(archive)
+            .build();
+    }
+
+    // Without an index on (user_id, senddate), every chunk of an age-based delete scans the whole table
+    private void checkSenddateIndex() throws SQLException {
+        if (db.query(SENDDATE_INDEXES_SQL, List.of()).isEmpty()) {
+            log.warn("No index on usernotification (user_id, senddate) found; consider creating one before deleting by age");
+        }
+        var plan = explainDelete(users.allUsers ? 0 : users.user);
+        if (plan.stream().anyMatch(line -> line.contains("Seq Scan"))) {
+            log.warn("The plan of the age-based delete uses a sequential scan on usernotification; deleting may be slow");
+        }
+    }
+
+    private void reportDryRun() throws Exception {
+        var filter = users.allUsers ? "" : "WHERE user_id = ?";
+        var parameters = new ArrayList<Object>();
+        String countsSql;
+        if (cutoff != null) {
+            countsSql = DELETABLE_OLD_COUNTS_SQL;
+            if (!users.allUsers) {
+                parameters.add(users.user);
+            }
+            parameters.add(numberOfRecordsToKeep);
+            parameters.add(cutoff);
+        }
+        else {
+            countsSql = DELETABLE_COUNTS_SQL;
+            parameters.add(numberOfRecordsToKeep);
+            if (!users.allUsers) {
+                parameters.add(users.user);
+            }
+            parameters.add(numberOfRecordsToKeep);
+        }
+
+        // All counts are streamed to compute the totals, but only the top ones are kept
+        List<DeletableCount> topUsers = new ArrayList<>();
+        Integer firstUserId = null;
+        long totalUsers = 0;
+        long totalRecords = 0;
+        long totalChunks = 0;
+        try (var counts = db.stream(String.format(countsSql, filter), parameters, row -> new DeletableCount(row.getInt(1), row.getLong(2)))) {
+            for (var count : (Iterable<DeletableCount>) counts::iterator) {
+                if (topUsers.size() < top) {
+                    topUsers.add(count);
+                }
+                if (firstUserId == null) {
+                    firstUserId = count.userId();
+                }
+                totalUsers++;
+                totalRecords += count.count();
+                totalChunks += (count.count() + chunkSize - 1) / chunkSize;
+            }
+        }
+
+        System.out.println("Dry run: no notifications are deleted");
+        System.out.println("Users with notifications to delete: " + totalUsers);
+        System.out.println("Notifications to delete: " + totalRecords);
+        if (!topUsers.isEmpty()) {
+            System.out.println("Top " + topUsers.size() + " user(s):");
+            topUsers.forEach(count -> System.out.println("  user " + count.userId() + ": " + count.count()));
+        }
+        if (firstUserId != null) {
+            System.out.println("Plan of the delete statement:");
+            for (var line : explainDelete(firstUserId)) {
+                System.out.println("  " + line);
+            }
+        }
+        System.out.println("Estimated runtime, not counting the statements themselves (lower bound): " + Duration.ofMillis(estimateMinimumMillis(totalUsers, totalRecords, totalChunks)));
+    }
+
+    // The query plan of the statement that does the work for the user
+    private List<String> explainDelete(int userId) throws SQLException {
+        if (cutoff != null || chunked) {
+            return retentionEngine().explainChunk(userId);
+        }
+        String sql;
+        List<Object> parameters;
+        if (setBased) {
+            // The chunks are deleted by their position in the work table, so the ranking is what determines the cost
+            sql = String.format(EXCESS_SELECT_SQL, excessFilter());
+            parameters = excessParameters(userId);
+        }
+        else {
+            sql = DELETE_NOTIFICATIONS_SQL;
+            parameters = deleteNotificationsParameters(new NotificationTruncateParams(db, userId, numberOfRecordsToKeep));
+        }
+        return db.query("EXPLAIN " + sql, parameters).stream().map(row -> row.get(0)).toList();
+    }
+
+    // The execution time of the statements cannot be known in advance, so this is a lower bound. The delays and the rate limit overlap, because the time of a delay counts towards the rate.
+    private long estimateMinimumMillis(long totalUsers, long totalRecords, long totalChunks) {
+        if (totalUsers == 0) {
+            return 0;
+        }
+        long waitMillis = estimateWaitMillis(totalUsers, totalRecords, totalChunks);
+        if (maxRowsPerSecond > 0) {
+            return Math.max(waitMillis, totalRecords * 1000 / maxRowsPerSecond);
+        }
+        return waitMillis;
+    }
+
+    // The time spent in the configured delays
+    private long estimateWaitMillis(long totalUsers, long totalRecords, long totalChunks) {
+        if (setBased) {
+            // The partitions wait at the same time
+            return (totalRecords / chunkSize) * chunkDelay / partitions;
+        }
+        long statements = (totalUsers + batchSize - 1) / batchSize;
+        long userDelays = (statements - 1) * delay / parallel;
+        if (chunked || cutoff != null) {
+            return userDelays + (totalChunks - totalUsers) * chunkDelay / parallel;
+        }
+        return userDelays;
+    }
+
     List<Pair<String, NotificationTruncateParams>> getItems() throws Exception {
         List<Pair<String, NotificationTruncateParams>> items = new ArrayList<>();
         try {
@@ -130,18 +617,32 @@ public class TruncateNotifications extends AbstractCmd {
         return items;
     }
 
+    // groups the items into batches of at most batchSize users, labeled with the first and last user id
+    private List<Pair<String, List<NotificationTruncateParams>>> toBatches(List<Pair<String, NotificationTruncateParams>> items) {
+        List<Pair<String, List<NotificationTruncateParams>>> batches = new ArrayList<>();
+        for (int start = 0; start < items.size(); start += batchSize) {
+            var batch = items.subList(start, Math.min(start + batchSize, items.size()));
+            var label = batch.size() == 1 ? batch.get(0).getFirst() : batch.get(0).getFirst() + ".." + batch.get(batch.size() - 1).getFirst();
+            batches.add(new Pair<>(label, batch.stream().map(Pair::getSecond).toList()));
+        }
+        return batches;
+    }
+
     // get the user_id for all users that need truncation
     private List<Integer> getUserIds(Database db) throws SQLException {
-        List<Integer> users = new ArrayList<Integer>();
         // Could just get all users with notifications
         // String sql = "SELECT DISTINCT user_id FROM usernotification;";
         // Instead we want only users with too many notifications
-        String sql = String.format("SELECT user_id FROM usernotification GROUP BY user_id HAVING COUNT(user_id) > %d;", numberOfRecordsToKeep);
-        List<List<String>> results = db.query(sql);
-        for (List<String> row : results) {
-            users.add(Integer.parseInt(row.get(0)));
+        String sql = "SELECT user_id FROM usernotification GROUP BY user_id HAVING COUNT(user_id) > ?;";
+        List<Object> parameters = List.of(numberOfRecordsToKeep);
+        if (cutoff != null) {
+            sql = USERS_WITH_OLD_NOTIFICATIONS_SQL;
+            parameters = List.of(numberOfRecordsToKeep, cutoff);
+        }
+        // The ids are streamed and kept as ints, rather than loading the whole result as strings
+        try (var userIds = db.stream(sql, parameters, row -> row.getInt(1))) {
+            return userIds.toList();
         }
-        return users;
     }
 
     private static String getResultsAsString(List<List<String>> results) {
@@ -16,6 +16,7 @@
 package nl.knaw.dans.dvcli.command.collection;
 
 import lombok.NonNull;
+import nl.knaw.dans.dvcli.action.HttpConnectionPool;
 import nl.knaw.dans.dvcli.action.Pair;
 import nl.knaw.dans.dvcli.action.SingleCollectionOrCollectionsFile;
 import nl.knaw.dans.dvcli.command.AbstractSubcommandContainer;
@@ -34,6 +35,10 @@ public class CollectionCmd extends AbstractSubcommandContainer<DataverseApi> {
         super(dataverseClient);
     }
 
+    public CollectionCmd(@NonNull DataverseClient dataverseClient, HttpConnectionPool httpConnectionPool) {
+        super(dataverseClient, httpConnectionPool);
+    }
+
     @Override
     protected List<Pair<String, DataverseApi>> getItems() throws IOException {
         return new SingleCollectionOrCollectionsFile(getTargets(), dataverseClient).getCollections().toList();
@@ -15,6 +15,7 @@
  */
 package nl.knaw.dans.dvcli.command.collection;
 
+import nl.knaw.dans.dvcli.action.CachedFileContent;
 import nl.knaw.dans.dvcli.command.AbstractCmd;
 import nl.knaw.dans.lib.dataverse.DataverseException;
 import picocli.CommandLine.Command;
@@ -23,7 +24,6 @@ import picocli.CommandLine.Parameters;
 import picocli.CommandLine.ParentCommand;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
@@ -43,7 +43,8 @@ public class CollectionCreateDataset extends AbstractCmd {
 
     @Override
     public void doCall() throws IOException, DataverseException {
+        var datasetJson = new CachedFileContent(Path.of(dataset));
         collectionCmd.batchProcessor(c ->
-            c.createDataset(Files.readString(Path.of(dataset)), metadataKeys).getEnvelopeAsString()).process();
+            c.createDataset(datasetJson.get(), metadataKeys).getEnvelopeAsString()).process();
     }
 }
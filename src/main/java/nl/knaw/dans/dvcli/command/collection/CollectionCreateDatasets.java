@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.command.collection;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import nl.knaw.dans.dvcli.action.ConsoleReport;
+import nl.knaw.dans.dvcli.action.Pair;
+import nl.knaw.dans.dvcli.action.ResumeLog;
+import nl.knaw.dans.dvcli.action.ThrowingFunction;
+import nl.knaw.dans.dvcli.command.AbstractCmd;
+import nl.knaw.dans.lib.dataverse.DataverseClient;
+import picocli.CommandLine.ArgGroup;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.ParentCommand;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+@Command(name = "create-datasets",
+         mixinStandardHelpOptions = true,
+         description = """
+             Create many datasets in one run. The dataset descriptions are read one by one from a JSON Lines file or from a set of JSON files, so that the input can be arbitrarily large. Use the \
+             --parallel option of 'collection' to create several datasets at the same time.
+             """)
+public class CollectionCreateDatasets extends AbstractCmd {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @ParentCommand
+    private CollectionCmd collectionCmd;
+
+    static class Input {
+        @Option(names = { "--jsonl" }, paramLabel = "file", description = "A JSON Lines file with one object per line. The object contains the dataset description and, optionally, the "
+            + "alias of the collection to create it in (see --dataset-field and --collection-field). Without a collection, the dataset is created in the target collection.")
+        private Path jsonLines;
+
+        @Option(names = { "--files" }, paramLabel = "dir-or-glob", description = "A directory with JSON files, or a glob pattern for the JSON files in a directory, e.g. 'input/*.json'. "
+            + "Each file contains one dataset description. The datasets are created in the target collection.")
+        private String files;
+    }
+
+    @ArgGroup(multiplicity = "1")
+    private Input input;
+
+    @Option(names = { "--collection-field" }, description = "The field in a JSON Lines object that contains the collection alias (default: ${DEFAULT-VALUE}).", defaultValue = "collection")
+    private String collectionField = "collection";
+
+    @Option(names = { "--dataset-field" }, description = "The field in a JSON Lines object that contains the dataset description (default: ${DEFAULT-VALUE}).", defaultValue = "dataset")
+    private String datasetField = "dataset";
+
+    @Option(names = { "-m", "--mdkeys" }, paramLabel = "metadataKeys", description = "Maps the names of the metadata blocks to their 'secret' key values")
+    private Map<String, String> metadataKeys = new HashMap<>();
+
+    @Option(names = { "--resume-file" }, paramLabel = "file", description = "A file in which the datasets that were created are recorded. Datasets that are already recorded in it are "
+        + "skipped, so that an interrupted run can be continued by running the same command again.")
+    private Path resumeFile;
+
+    /**
+     * A dataset description, either a file or a line of a JSON Lines file.
+     */
+    record DatasetSource(Path file, String line) {
+    }
+
+    @AllArgsConstructor
+    static class CreateDatasetAction implements ThrowingFunction<DatasetSource, String, Exception> {
+        private final DataverseClient client;
+        private final String defaultCollection;
+        private final String collectionField;
+        private final String datasetField;
+        private final Map<String, String> metadataKeys;
+
+        @Override
+        public String apply(DatasetSource source) throws Exception {
+            String collection = defaultCollection;
+            String json;
+            if (source.file() != null) {
+                json = Files.readString(source.file());
+            }
+            else {
+                var node = MAPPER.readTree(source.line());
+                var dataset = node.get(datasetField);
+                if (dataset == null || !dataset.isObject()) {
+                    throw new IllegalArgumentException("No dataset description in field '" + datasetField + "'");
+                }
+                if (node.hasNonNull(collectionField)) {
+                    collection = node.get(collectionField).asText();
+                }
+                json = MAPPER.writeValueAsString(dataset);
+            }
+            if (collection == null) {
+                throw new IllegalArgumentException("No collection in field '" + collectionField + "' and no single target collection");
+            }
+            return client.dataverse(collection).createDataset(json, metadataKeys).getEnvelopeAsString();
+        }
+    }
+
+    @Override
+    public void doCall() throws Exception {
+        var targets = collectionCmd.getItems();
+        var defaultCollection = targets.size() == 1 ? targets.get(0).getFirst() : null;
+        if (input.files != null && defaultCollection == null) {
+            throw new IllegalArgumentException("Creating datasets from files requires a single target collection");
+        }
+        var action = new CreateDatasetAction(collectionCmd.getDataverseClient(), defaultCollection, collectionField, datasetField, metadataKeys);
+        if (resumeFile == null) {
+            collectionCmd.<DatasetSource> paramsBatchProcessorBuilder()
+                .labeledItems(getLabeledItems())
+                .action(action)
+                .build()
+                .process();
+        }
+        else {
+            try (var resumeLog = new ResumeLog(resumeFile)) {
+                collectionCmd.<DatasetSource> paramsBatchProcessorBuilder()
+                    .labeledItems(getLabeledItems().filter(item -> !resumeLog.isDone(item.getFirst())))
+                    .action(action)
+                    .report(resumeLog.recording(new ConsoleReport<>()))
+                    .build()
+                    .process();
+            }
+        }
+    }
+
+    private Stream<Pair<String, DatasetSource>> getLabeledItems() throws IOException {
+        if (input.jsonLines != null) {
+            return readJsonLines(input.jsonLines);
+        }
+        return listFiles(input.files).stream()
+            .map(file -> new Pair<>(file.toString(), new DatasetSource(file, null)));
+    }
+
+    // Lines are read as they are needed; they are parsed by the action, so that parsing is done in parallel as well
+    private static Stream<Pair<String, DatasetSource>> readJsonLines(Path jsonLines) throws IOException {
+        BufferedReader reader = Files.newBufferedReader(jsonLines);
+        var lineNumber = new AtomicLong();
+        return reader.lines()
+            .map(line -> new Pair<>(jsonLines + ":" + lineNumber.incrementAndGet(), new DatasetSource(null, line)))
+            .filter(item -> !item.getSecond().line().isBlank())
+            .onClose(() -> {
+                try {
+                    reader.close();
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+    }
+
+    // The paths are sorted, so that the order of processing is the same in every run
+    static List<Path> listFiles(String dirOrGlob) throws IOException {
+        var path = Path.of(dirOrGlob);
+        Path dir;
+        String glob;
+        if (Files.isDirectory(path)) {
+            dir = path;
+            glob = "*.json";
+        }
+        else {
+            dir = path.getParent() == null ? Path.of(".") : path.getParent();
+            glob = path.getFileName().toString();
+        }
+        var files = new ArrayList<Path>();
+        try (var stream = Files.newDirectoryStream(dir, glob)) {
+            for (var file : stream) {
+                if (Files.isRegularFile(file)) {
+                    files.add(file);
+                }
+            }
+        }
+        files.sort(null);
+        return files;
+    }
+}
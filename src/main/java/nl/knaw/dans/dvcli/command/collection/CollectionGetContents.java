@@ -15,22 +15,108 @@
  */
 package nl.knaw.dans.dvcli.command.collection;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.dvcli.action.Pair;
+import nl.knaw.dans.dvcli.action.ThrowingFunction;
+import nl.knaw.dans.dvcli.action.TreeCrawler;
 import nl.knaw.dans.dvcli.command.AbstractCmd;
+import nl.knaw.dans.lib.dataverse.DataverseApi;
+import nl.knaw.dans.lib.dataverse.DataverseClient;
 import nl.knaw.dans.lib.dataverse.DataverseException;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
 import picocli.CommandLine.ParentCommand;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 @Command(name = "get-contents",
          mixinStandardHelpOptions = true,
          description = "Show contents of a dataverse collection.")
+@Slf4j
 public class CollectionGetContents extends AbstractCmd {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public enum ItemType {
+        dataset, collection
+    }
+
     @ParentCommand
     private CollectionCmd collectionCmd;
 
+    @Option(names = { "-r", "--recursive" }, description = "Also show the contents of the subcollections, and of their subcollections, etc. The collections are crawled breadth-first, "
+        + "--parallel at a time, and the contents of each collection are shown as a JSON array as soon as they are found, labeled with the path of collection IDs from the target.")
+    private boolean recursive;
+
+    @Option(names = { "--max-depth" }, description = "With --recursive, the number of levels of subcollections to crawl; 0 means only the targets. A negative number means no limit "
+        + "(default: ${DEFAULT-VALUE}).", defaultValue = "-1")
+    private int maxDepth = -1;
+
+    @Option(names = { "--type" }, description = "With --recursive, only show items of this type: ${COMPLETION-CANDIDATES}. Subcollections are crawled regardless.")
+    private ItemType type;
+
+    @Option(names = { "--max-frontier" }, description = "With --recursive, the maximum number of found collections that are waiting to be crawled (default: ${DEFAULT-VALUE}).",
+            defaultValue = "10000")
+    private int maxFrontier = 10000;
+
+    @AllArgsConstructor
+    static class ContentsVisitor implements ThrowingFunction<DataverseApi, TreeCrawler.Visit<DataverseApi>, Exception> {
+        private final DataverseClient client;
+        private final ItemType type;
+
+        @Override
+        public TreeCrawler.Visit<DataverseApi> apply(DataverseApi collection) throws Exception {
+            var items = MAPPER.readTree(collection.getContents().getEnvelopeAsString()).path("data");
+            var shown = MAPPER.createArrayNode();
+            List<Pair<String, DataverseApi>> children = new ArrayList<>();
+            for (var item : items) {
+                var itemType = item.path("type").asText();
+                boolean isCollection = "dataverse".equals(itemType);
+                if (isCollection) {
+                    // The contents only give the database ID of a subcollection, which the API accepts instead of the alias
+                    var id = item.path("id").asText();
+                    children.add(new Pair<>(id, client.dataverse(id)));
+                }
+                if (type == null || (type == ItemType.collection) == isCollection) {
+                    shown.add(item);
+                }
+            }
+            return new TreeCrawler.Visit<>(MAPPER.writeValueAsString(shown), children);
+        }
+
+        // A target may be given by its alias, but the subcollections are keyed by their database ID, so the targets must be keyed the same way
+        static String idOf(DataverseApi collection) throws Exception {
+            var id = MAPPER.readTree(collection.view().getEnvelopeAsString()).path("data").path("id");
+            if (id.isMissingNode()) {
+                throw new IllegalStateException("No ID found for collection");
+            }
+            return id.asText();
+        }
+    }
+
     @Override
     public void doCall() throws IOException, DataverseException {
-        collectionCmd.batchProcessor(c -> c.getContents().getEnvelopeAsString()).process();
+        if (!recursive && (type != null || maxDepth != -1)) {
+            throw new IllegalArgumentException("--type and --max-depth can only be used with --recursive");
+        }
+        collectionCmd.enableResponseCache();
+        if (recursive) {
+            int visited = TreeCrawler.<DataverseApi> builder()
+                .visitor(new ContentsVisitor(collectionCmd.getDataverseClient(), type))
+                .rootKey(ContentsVisitor::idOf)
+                .parallelism(collectionCmd.getParallel())
+                .delay(collectionCmd.getDelay())
+                .maxDepth(maxDepth)
+                .maxFrontierSize(maxFrontier)
+                .build()
+                .crawl(collectionCmd.getItems());
+            log.info("Crawled {} collection(s)", visited);
+        }
+        else {
+            collectionCmd.batchProcessor(c -> c.getContents().getEnvelopeAsString()).process();
+        }
     }
 }
@@ -31,6 +31,7 @@ public class CollectionIsMetadataBlocksRoot extends AbstractCmd {
 
     @Override
     public void doCall() throws IOException, DataverseException {
+        collectionCmd.enableResponseCache();
         collectionCmd.batchProcessor(c -> c.isMetadataBlocksRoot().getEnvelopeAsString()).process();
     }
 }
@@ -31,6 +31,7 @@ public class CollectionListRoles extends AbstractCmd {
 
     @Override
     public void doCall() throws IOException, DataverseException {
+        collectionCmd.enableResponseCache();
         collectionCmd.batchProcessor(c -> c.listRoles().getEnvelopeAsString()).process();
     }
 }
@@ -31,6 +31,7 @@ public class CollectionView extends AbstractCmd {
 
     @Override
     public void doCall() throws IOException, DataverseException {
+        collectionCmd.enableResponseCache();
         collectionCmd.batchProcessor(c -> c.view().getEnvelopeAsString()).process();
     }
 }
@@ -15,7 +15,6 @@
  */
 package nl.knaw.dans.dvcli.command.collection.roleassignment;
 
-import nl.knaw.dans.dvcli.action.ConsoleReport;
 import nl.knaw.dans.dvcli.action.ThrowingFunction;
 import nl.knaw.dans.dvcli.command.AbstractRoleAssignmentSubcommand;
 import nl.knaw.dans.dvcli.command.collection.CollectionCmd;
@@ -51,12 +50,7 @@ public class CollectionRoleAssignmentAdd extends AbstractRoleAssignmentSubcomman
 
     @Override
     public void doCall() throws Exception {
-        collectionRoleAssignment.getCollectionCmd().<RoleAssignmentParams<DataverseApi>> paramsBatchProcessorBuilder()
-            .labeledItems(getRoleAssignmentParams(collectionRoleAssignment.getCollectionCmd()))
-            .action(new AddAssignmentAction())
-            .report(new ConsoleReport<>())
-            .build()
-            .process();
+        processRoleAssignments(collectionRoleAssignment.getCollectionCmd(), new AddAssignmentAction());
     }
 }
 
@@ -31,6 +31,7 @@ public class CollectionRoleAssignmentList extends AbstractCmd {
 
     @Override
     public void doCall() throws DataverseException, IOException {
+        collectionRoleAssignment.getCollectionCmd().enableResponseCache();
         collectionRoleAssignment.getCollectionCmd().batchProcessor(d -> d.listRoleAssignments().getEnvelopeAsString()).process();
     }
 }
@@ -15,18 +15,17 @@
  */
 package nl.knaw.dans.dvcli.command.collection.roleassignment;
 
-import nl.knaw.dans.dvcli.action.ConsoleReport;
+import lombok.AllArgsConstructor;
+import nl.knaw.dans.dvcli.action.RoleAssignmentCache;
 import nl.knaw.dans.dvcli.action.ThrowingFunction;
 import nl.knaw.dans.dvcli.command.AbstractRoleAssignmentSubcommand;
 import nl.knaw.dans.dvcli.command.collection.CollectionCmd;
 import nl.knaw.dans.lib.dataverse.DataverseApi;
-import nl.knaw.dans.lib.dataverse.DataverseException;
 import nl.knaw.dans.lib.dataverse.model.RoleAssignment;
 import nl.knaw.dans.lib.dataverse.model.RoleAssignmentReadOnly;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.ParentCommand;
 
-import java.io.IOException;
 import java.util.Optional;
 
 @Command(name = "remove",
@@ -43,28 +42,29 @@ public class CollectionRoleAssignmentRemove extends AbstractRoleAssignmentSubcom
 
     @Override
     public void doCall() throws Exception {
-        collectionRoleAssignment.getCollectionCmd().<RoleAssignmentParams<DataverseApi>> paramsBatchProcessorBuilder()
-            .labeledItems(getRoleAssignmentParams(collectionRoleAssignment.getCollectionCmd()))
-            .action(new RemoveAssignmentAction())
-            .report(new ConsoleReport<>())
-            .build()
-            .process();
+        processRoleAssignments(collectionRoleAssignment.getCollectionCmd(), new RemoveAssignmentAction(new RoleAssignmentCache()));
     }
 
+    @AllArgsConstructor
     private static class RemoveAssignmentAction implements ThrowingFunction<RoleAssignmentParams<DataverseApi>, String, Exception> {
+        private final RoleAssignmentCache roleAssignmentCache;
+
         @Override
-        public String apply(RoleAssignmentParams<DataverseApi> roleAssignmentParams) throws IOException, DataverseException {
+        public String apply(RoleAssignmentParams<DataverseApi> roleAssignmentParams) throws Exception {
             if (roleAssignmentParams.roleAssignment().isPresent()) {
                 RoleAssignment roleAssignment = roleAssignmentParams.roleAssignment().get();
-                Optional<RoleAssignmentReadOnly> role = roleAssignmentParams.pid().listRoleAssignments().getData().stream()
-                    .filter(r -> r.get_roleAlias().equals(roleAssignment.getRole()) && r.getAssignee().equals(roleAssignment.getAssignee())).findFirst();
-                if (role.isPresent()) {
-                    var r = roleAssignmentParams.pid().deleteRoleAssignment(role.get().getId());
-                    return r.getEnvelopeAsString();
-                }
-                else {
-                    throw new IllegalArgumentException("Role assignment not found.");
-                }
+                return roleAssignmentCache.withAssignments(roleAssignmentParams.target(), () -> roleAssignmentParams.pid().listRoleAssignments().getData(), assignments -> {
+                    Optional<RoleAssignmentReadOnly> role = assignments.stream()
+                        .filter(r -> r.get_roleAlias().equals(roleAssignment.getRole()) && r.getAssignee().equals(roleAssignment.getAssignee())).findFirst();
+                    if (role.isPresent()) {
+                        var r = roleAssignmentParams.pid().deleteRoleAssignment(role.get().getId());
+                        assignments.remove(role.get());
+                        return r.getEnvelopeAsString();
+                    }
+                    else {
+                        throw new IllegalArgumentException("Role assignment not found.");
+                    }
+                });
             }
             throw new IllegalArgumentException("No role assignment to remove provided.");
         }
@@ -17,6 +17,7 @@ package nl.knaw.dans.dvcli.command.dataset;
 
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.dvcli.action.HttpConnectionPool;
 import nl.knaw.dans.dvcli.action.Pair;
 import nl.knaw.dans.dvcli.action.SingleDatasetOrDatasetsFile;
 import nl.knaw.dans.dvcli.command.AbstractSubcommandContainer;
@@ -37,6 +38,10 @@ public class DatasetCmd extends AbstractSubcommandContainer<DatasetApi> {
         super(dataverseClient);
     }
 
+    public DatasetCmd(@NonNull DataverseClient dataverseClient, HttpConnectionPool httpConnectionPool) {
+        super(dataverseClient, httpConnectionPool);
+    }
+
     @Override
     protected List<Pair<String, DatasetApi>> getItems() throws IOException {
         return new SingleDatasetOrDatasetsFile(getTargets(), dataverseClient).getDatasets().collect(Collectors.toList());
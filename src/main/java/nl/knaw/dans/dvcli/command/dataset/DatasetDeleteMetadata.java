@@ -16,10 +16,13 @@
 package nl.knaw.dans.dvcli.command.dataset;
 
 import lombok.Value;
+import nl.knaw.dans.dvcli.action.FieldListMerger;
+import nl.knaw.dans.dvcli.action.LabelGrouper;
 import nl.knaw.dans.dvcli.action.Pair;
 import nl.knaw.dans.dvcli.action.ThrowingFunction;
 import nl.knaw.dans.dvcli.command.AbstractCmd;
 import nl.knaw.dans.dvcli.inputparsers.FieldValuesParamsFileParser;
+import nl.knaw.dans.dvcli.inputparsers.FieldValuesParamsFileValidator;
 import nl.knaw.dans.dvcli.inputparsers.FieldValuesParser;
 import nl.knaw.dans.lib.dataverse.DatasetApi;
 import nl.knaw.dans.lib.dataverse.model.dataset.FieldList;
@@ -63,6 +66,22 @@ public class DatasetDeleteMetadata extends AbstractCmd {
     @ArgGroup(multiplicity = "1")
     private FieldValueOrParameterFile fieldValueOrParameterFile;
 
+    @Option(names = { "--parse-threads" }, description = "Number of threads to use for parsing the parameters file. The order of the rows is preserved (default: ${DEFAULT-VALUE}, i.e. no "
+        + "parallel parsing).", defaultValue = "1")
+    private int parseThreads = 1;
+
+    @Option(names = { "--group-lookahead" }, description = "Merge the rows for the same dataset into as few API calls as possible. Rows for a dataset are merged as long as no more than this "
+        + "number of other datasets occur in between, so the file does not need to be sorted. Sort the file by PID to merge all rows of a dataset. If one of the values in a merged call does not "
+        + "exist, the whole call fails. 0 means no grouping (default: ${DEFAULT-VALUE}).", defaultValue = "0")
+    private int groupLookahead = 0;
+
+    @Option(names = { "--validate-only" }, description = "Only check the parameters file and report all problems, such as invalid field names, missing PIDs and empty rows, with their line "
+        + "numbers. No requests are sent to the server.")
+    private boolean validateOnly;
+
+    @Option(names = { "--validate-first" }, description = "Check the parameters file before processing it, and do not process it if any problems are found.")
+    private boolean validateFirst;
+
     private static class DeleteMetadataAction implements ThrowingFunction<DeleteMetadataParams, String, Exception> {
         @Override
         public String apply(DeleteMetadataParams deleteMetadataParams) throws Exception {
@@ -72,6 +91,18 @@ public class DatasetDeleteMetadata extends AbstractCmd {
         }
     }
 
+    private static class GroupedDeleteMetadataAction implements ThrowingFunction<List<DeleteMetadataParams>, String, Exception> {
+        @Override
+        public String apply(List<DeleteMetadataParams> rows) throws Exception {
+            var fieldLists = FieldListMerger.merge(rows.stream().map(DeleteMetadataParams::getFieldValues).toList());
+            var api = rows.get(0).getApi();
+            for (var fields : fieldLists) {
+                api.deleteMetadata(new FieldList(fields), Collections.emptyMap());
+            }
+            return "Delete metadata (" + rows.size() + " row(s) in " + fieldLists.size() + " call(s))";
+        }
+    }
+
     @Value
     private static class DeleteMetadataParams {
         DatasetApi api;
@@ -80,11 +111,39 @@ public class DatasetDeleteMetadata extends AbstractCmd {
 
     @Override
     public void doCall() throws Exception {
-        datasetCmd.<DeleteMetadataParams> paramsBatchProcessorBuilder()
-            .labeledItems(getLabeledItems())
-            .action(new DeleteMetadataAction())
-            .build()
-            .process();
+        if (validateOnly || validateFirst) {
+            validateParametersFile();
+            if (validateOnly) {
+                return;
+            }
+        }
+        if (groupLookahead > 0) {
+            datasetCmd.<List<DeleteMetadataParams>> paramsBatchProcessorBuilder()
+                .labeledItems(new LabelGrouper<DeleteMetadataParams>(groupLookahead).group(getLabeledItems()))
+                .action(new GroupedDeleteMetadataAction())
+                .build()
+                .process();
+        }
+        else {
+            datasetCmd.<DeleteMetadataParams> paramsBatchProcessorBuilder()
+                .labeledItems(getLabeledItems())
+                .action(new DeleteMetadataAction())
+                .build()
+                .process();
+        }
+    }
+
+    private void validateParametersFile() throws Exception {
+        var parametersFile = fieldValueOrParameterFile.parametersFile;
+        if (parametersFile == null) {
+            throw new IllegalArgumentException("Validation requires a parameters file.");
+        }
+        var problems = new FieldValuesParamsFileValidator(parametersFile, Runtime.getRuntime().availableProcessors()).validate();
+        problems.forEach(System.err::println);
+        if (!problems.isEmpty()) {
+            throw new Exception("Found " + problems.size() + " problem(s) in " + parametersFile);
+        }
+        System.err.println("No problems found in " + parametersFile);
     }
 
     private Stream<Pair<String, DeleteMetadataParams>> getLabeledItems() {
@@ -102,7 +161,7 @@ public class DatasetDeleteMetadata extends AbstractCmd {
             }
             else if (fieldValueOrParameterFile.parametersFile != null) {
                 return new FieldValuesParamsFileParser(fieldValueOrParameterFile.parametersFile)
-                    .parse()
+                    .parse(parseThreads)
                     .map(p -> new Pair<>(p.getFirst(), new DeleteMetadataParams(datasetCmd.getDataverseClient().dataset(p.getFirst()), p.getSecond())));
             }
         }
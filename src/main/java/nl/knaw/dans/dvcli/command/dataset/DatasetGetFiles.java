@@ -35,6 +35,7 @@ public class DatasetGetFiles extends AbstractCmd {
 
     @Override
     public void doCall() throws IOException, DataverseException {
+        datasetCmd.enableResponseCache();
         datasetCmd.batchProcessor(d -> d.getFiles(version).getEnvelopeAsString()).process();
     }
 }
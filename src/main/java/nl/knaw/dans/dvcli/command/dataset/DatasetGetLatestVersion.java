@@ -31,6 +31,7 @@ public class DatasetGetLatestVersion extends AbstractCmd {
 
     @Override
     public void doCall() throws IOException, DataverseException {
+        datasetCmd.enableResponseCache();
         datasetCmd.batchProcessor(d -> d.getLatestVersion().getEnvelopeAsString()).process();
     }
 
@@ -44,6 +44,7 @@ public class DatasetGetVersion extends AbstractCmd {
 
     @Override
     public void doCall() throws IOException, DataverseException {
+        datasetCmd.enableResponseCache();
         datasetCmd.batchProcessor(d ->
                 versionInfo.allVersions ? d.getAllVersions().getEnvelopeAsString() : d.getVersion(versionInfo.version).getEnvelopeAsString()
             )
@@ -15,7 +15,13 @@
  */
 package nl.knaw.dans.dvcli.command.dataset;
 
+import nl.knaw.dans.dvcli.action.AwaitingUnlockReport;
+import nl.knaw.dans.dvcli.action.ConsoleReport;
+import nl.knaw.dans.dvcli.action.LockTracker;
+import nl.knaw.dans.dvcli.action.SynchronizedReport;
 import nl.knaw.dans.dvcli.command.AbstractCmd;
+import nl.knaw.dans.dvcli.command.DurationConverter;
+import nl.knaw.dans.lib.dataverse.DatasetApi;
 import nl.knaw.dans.lib.dataverse.DataverseException;
 import nl.knaw.dans.lib.dataverse.model.dataset.UpdateType;
 import picocli.CommandLine.ArgGroup;
@@ -24,6 +30,8 @@ import picocli.CommandLine.Option;
 import picocli.CommandLine.ParentCommand;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
 
 @Command(name = "publish",
          mixinStandardHelpOptions = true,
@@ -45,6 +53,21 @@ public class DatasetPublish extends AbstractCmd {
     @Option(names = {"--skip-assure-indexed" }, paramLabel = "skip-assure-indexed", description = "Do not attempt to assure that the dataset is indexed.")
     private boolean skipAssureIsIndexed;
 
+    @Option(names = { "--wait" }, description = "Report a dataset only when it is actually released, i.e. when it has no locks anymore. The locks of all publications in progress are "
+        + "checked by one poller, while new publications are started.")
+    private boolean waitUntilReleased;
+
+    @Option(names = { "--max-in-progress" }, description = "With --wait, the maximum number of publications that are waited for at the same time. When it is reached, no new publication "
+        + "is started until one of them is released (default: ${DEFAULT-VALUE}).", defaultValue = "100")
+    private int maxInProgress = 100;
+
+    @Option(names = { "--poll-interval" }, description = "With --wait, the time in milliseconds between checks of the locks (default: ${DEFAULT-VALUE}).", defaultValue = "2000")
+    private long pollInterval = 2000;
+
+    @Option(names = { "--max-wait" }, description = "With --wait, how long to wait for a dataset to be released before it is reported as failed, e.g. '30m' (default: ${DEFAULT-VALUE}).",
+            defaultValue = "1h", converter = DurationConverter.class)
+    private Duration maxWait = Duration.ofHours(1);
+
     private UpdateType getUpdateType() {
         if (versionUpdateType != null && versionUpdateType.major)
             return UpdateType.major;
@@ -53,10 +76,39 @@ public class DatasetPublish extends AbstractCmd {
 
     @Override
     public void doCall() throws IOException, DataverseException {
-        datasetCmd.batchProcessor(dataset -> dataset
-            .publish(this.getUpdateType(), skipAssureIsIndexed)
-            .getEnvelopeAsString()
-        ).process();
+        if (waitUntilReleased) {
+            if (maxInProgress < 1) {
+                throw new IllegalArgumentException("Maximum number of publications in progress must be at least 1, now it was " + maxInProgress);
+            }
+            var inProgress = new Semaphore(maxInProgress);
+            try (var lockTracker = new LockTracker(pollInterval, maxWait.toMillis())) {
+                var releaseReport = new AwaitingUnlockReport<DatasetApi, String>(lockTracker, dataset -> () -> !dataset.getLocks().getData().isEmpty(), inProgress,
+                    new SynchronizedReport<>(new ConsoleReport<>()));
+                datasetCmd.batchProcessorBuilder()
+                    .action(dataset -> {
+                        // Blocks the starting of new publications, not the waiting for the ones in progress
+                        inProgress.acquire();
+                        try {
+                            return dataset
+                                .publish(this.getUpdateType(), skipAssureIsIndexed)
+                                .getEnvelopeAsString();
+                        }
+                        catch (Exception e) {
+                            inProgress.release();
+                            throw e;
+                        }
+                    })
+                    .report(releaseReport)
+                    .build()
+                    .process();
+                releaseReport.awaitAll();
+            }
+        }
+        else {
+            datasetCmd.batchProcessor(dataset -> dataset
+                .publish(this.getUpdateType(), skipAssureIsIndexed)
+                .getEnvelopeAsString()
+            ).process();
+        }
     }
-
 }
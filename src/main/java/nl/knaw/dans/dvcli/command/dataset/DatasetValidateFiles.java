@@ -15,26 +15,39 @@
  */
 package nl.knaw.dans.dvcli.command.dataset;
 
+import lombok.extern.slf4j.Slf4j;
 import nl.knaw.dans.dvcli.action.BatchProcessor;
 import nl.knaw.dans.dvcli.action.ConsoleReport;
+import nl.knaw.dans.dvcli.action.CostOrdering;
 import nl.knaw.dans.dvcli.action.Pair;
 import nl.knaw.dans.dvcli.action.SingleIdOrIdsFile;
 import nl.knaw.dans.dvcli.command.AbstractCmd;
 import nl.knaw.dans.lib.dataverse.AdminApi;
 import nl.knaw.dans.lib.dataverse.DataverseException;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
 import picocli.CommandLine.ParentCommand;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Command(name = "validate-files",
          mixinStandardHelpOptions = true,
          description = "Validate the fixity checksums of the files in a dataset.")
+@Slf4j
 public class DatasetValidateFiles extends AbstractCmd {
     @ParentCommand
     private DatasetCmd datasetCmd;
 
+    @Option(names = { "--max-concurrent" }, description = "Number of datasets that are validated at the same time (default: ${DEFAULT-VALUE}). Validation re-reads every file from storage, "
+        + "so this limit is separate from the --parallel option of 'dataset'.", defaultValue = "1")
+    private int maxConcurrent = 1;
+
+    @Option(names = { "--largest-first" }, description = "Validate the datasets with the largest total file size first, so that the batch does not end with one long validation running on "
+        + "its own. Looking up the sizes takes one extra request per dataset.")
+    private boolean largestFirst;
+
     protected List<Pair<String, String>> getIds() throws IOException {
         List<String> pids = new SingleIdOrIdsFile(datasetCmd.getTargets(), SingleIdOrIdsFile.DEFAULT_TARGET_PLACEHOLDER).getPids().toList();
         // The label is the same as the id. Since the BatchProcessor expects labeled items, we create a list of pairs with the same id as label.
@@ -46,15 +59,30 @@ public class DatasetValidateFiles extends AbstractCmd {
 
     @Override
     public void doCall() throws IOException, DataverseException {
+        var ids = getIds();
+        if (largestFirst) {
+            ids = CostOrdering.mostExpensiveFirst(ids, this::getTotalFileSize, maxConcurrent);
+        }
+        var done = new AtomicInteger();
+        int total = ids.size();
         // Not using the helper method on datasetCmd because we need to call the admin endpoint and not the dataset endpoint.
         BatchProcessor.<String, String> builder()
-            .labeledItems(getIds())
+            .labeledItems(ids)
             .action(pid -> {
+                long start = System.currentTimeMillis();
                 var r = datasetCmd.getDataverseClient().admin().validateDatasetFiles(pid);
+                log.info("Validated {} in {} s ({} of {} done)", pid, (System.currentTimeMillis() - start) / 1000, done.incrementAndGet(), total);
                 return r.getBodyAsString();
             })
             .report(new ConsoleReport<>())
+            .parallelism(maxConcurrent)
             .build()
             .process();
     }
+
+    private long getTotalFileSize(String pid) throws IOException, DataverseException {
+        return datasetCmd.getDataverseClient().dataset(pid).getFiles(":latest").getData().stream()
+            .mapToLong(fileMeta -> fileMeta.getDataFile().getFilesize())
+            .sum();
+    }
 }
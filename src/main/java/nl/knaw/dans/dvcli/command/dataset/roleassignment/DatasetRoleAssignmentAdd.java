@@ -15,7 +15,6 @@
  */
 package nl.knaw.dans.dvcli.command.dataset.roleassignment;
 
-import nl.knaw.dans.dvcli.action.ConsoleReport;
 import nl.knaw.dans.dvcli.action.ThrowingFunction;
 import nl.knaw.dans.dvcli.command.AbstractRoleAssignmentSubcommand;
 import nl.knaw.dans.dvcli.command.dataset.DatasetCmd;
@@ -51,11 +50,6 @@ public class DatasetRoleAssignmentAdd extends AbstractRoleAssignmentSubcommand<D
 
     @Override
     public void doCall() throws IOException, DataverseException {
-        datasetRoleAssignment.getDatasetCmd().<RoleAssignmentParams<DatasetApi>> paramsBatchProcessorBuilder()
-            .labeledItems(getRoleAssignmentParams(datasetRoleAssignment.getDatasetCmd()))
-            .action(new AddAssignmentAction())
-            .report(new ConsoleReport<>())
-            .build()
-            .process();
+        processRoleAssignments(datasetRoleAssignment.getDatasetCmd(), new AddAssignmentAction());
     }
 }
@@ -31,6 +31,7 @@ public class DatasetRoleAssignmentList extends AbstractCmd {
 
     @Override
     public void doCall() throws IOException, DataverseException {
+        datasetRoleAssignment.getDatasetCmd().enableResponseCache();
         datasetRoleAssignment.getDatasetCmd().batchProcessor(d -> d.listRoleAssignments().getEnvelopeAsString()).process();
     }
 }
@@ -15,7 +15,8 @@
  */
 package nl.knaw.dans.dvcli.command.dataset.roleassignment;
 
-import nl.knaw.dans.dvcli.action.ConsoleReport;
+import lombok.AllArgsConstructor;
+import nl.knaw.dans.dvcli.action.RoleAssignmentCache;
 import nl.knaw.dans.dvcli.action.ThrowingFunction;
 import nl.knaw.dans.dvcli.command.AbstractRoleAssignmentSubcommand;
 import nl.knaw.dans.dvcli.command.dataset.DatasetCmd;
@@ -41,20 +42,26 @@ public class DatasetRoleAssignmentRemove extends AbstractRoleAssignmentSubcomman
         return datasetRoleAssignment.getDatasetCmd().getDataverseClient().dataset(pid);
     }
 
+    @AllArgsConstructor
     private static class RemoveAssignmentAction implements ThrowingFunction<RoleAssignmentParams<DatasetApi>, String, Exception> {
+        private final RoleAssignmentCache roleAssignmentCache;
+
         @Override
-        public String apply(RoleAssignmentParams<DatasetApi> roleAssignmentParams) throws IOException, DataverseException {
+        public String apply(RoleAssignmentParams<DatasetApi> roleAssignmentParams) throws Exception {
             if (roleAssignmentParams.roleAssignment().isPresent()) {
                 RoleAssignment roleAssignment = roleAssignmentParams.roleAssignment().get();
-                Optional<RoleAssignmentReadOnly> role = roleAssignmentParams.pid().listRoleAssignments().getData().stream()
-                    .filter(r -> r.get_roleAlias().equals(roleAssignment.getRole()) && r.getAssignee().equals(roleAssignment.getAssignee())).findFirst();
-                if (role.isPresent()) {
-                    var r = roleAssignmentParams.pid().deleteRoleAssignment(role.get().getId());
-                    return r.getEnvelopeAsString();
-                }
-                else {
-                    throw new IllegalArgumentException("Role assignment not found.");
-                }
+                return roleAssignmentCache.withAssignments(roleAssignmentParams.target(), () -> roleAssignmentParams.pid().listRoleAssignments().getData(), assignments -> {
+                    Optional<RoleAssignmentReadOnly> role = assignments.stream()
+                        .filter(r -> r.get_roleAlias().equals(roleAssignment.getRole()) && r.getAssignee().equals(roleAssignment.getAssignee())).findFirst();
+                    if (role.isPresent()) {
+                        var r = roleAssignmentParams.pid().deleteRoleAssignment(role.get().getId());
+                        assignments.remove(role.get());
+                        return r.getEnvelopeAsString();
+                    }
+                    else {
+                        throw new IllegalArgumentException("Role assignment not found.");
+                    }
+                });
             }
             throw new IllegalArgumentException("No role assignment to remove provided.");
         }
@@ -62,11 +69,6 @@ public class DatasetRoleAssignmentRemove extends AbstractRoleAssignmentSubcomman
 
     @Override
     public void doCall() throws IOException, DataverseException {
-        datasetRoleAssignment.getDatasetCmd().<RoleAssignmentParams<DatasetApi>> paramsBatchProcessorBuilder()
-            .labeledItems(getRoleAssignmentParams(datasetRoleAssignment.getDatasetCmd()))
-            .action(new RemoveAssignmentAction())
-            .report(new ConsoleReport<>())
-            .build()
-            .process();
+        processRoleAssignments(datasetRoleAssignment.getDatasetCmd(), new RemoveAssignmentAction(new RoleAssignmentCache()));
     }
 }
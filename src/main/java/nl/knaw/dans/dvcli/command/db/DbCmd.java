@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.command.db;
+
+import lombok.Getter;
+import lombok.NonNull;
+import nl.knaw.dans.dvcli.action.Database;
+import nl.knaw.dans.dvcli.command.AbstractCmd;
+import picocli.CommandLine.Command;
+
+@Command(name = "db",
+         mixinStandardHelpOptions = true,
+         description = "Work directly with the Dataverse database.")
+@Getter
+public class DbCmd extends AbstractCmd {
+    private final Database database;
+
+    public DbCmd(@NonNull Database database) {
+        this.database = database;
+    }
+
+    @Override
+    public void doCall() {
+        // do nothing
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.command.db;
+
+import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.dvcli.command.AbstractCmd;
+import picocli.CommandLine.ArgGroup;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.ParentCommand;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+@Command(name = "export",
+         mixinStandardHelpOptions = true,
+         description = """
+             Export a table or the result of a query as CSV. The data is streamed from the database with the COPY protocol of Postgres, so exports of any size take little memory.
+             """)
+@Slf4j
+public class DbExport extends AbstractCmd {
+    private static final Pattern TABLE_NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*(\\.[A-Za-z_][A-Za-z0-9_]*)?");
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @ParentCommand
+    private DbCmd dbCmd;
+
+    static class TableOrQuery {
+        @Option(names = { "-t", "--table" }, description = "The table to export.")
+        String table;
+
+        @Option(names = { "-q", "--query" }, description = "The query whose result to export, e.g. 'SELECT * FROM usernotification WHERE senddate < now() - interval ''1 year'''.")
+        String query;
+    }
+
+    @ArgGroup(multiplicity = "1")
+    private TableOrQuery tableOrQuery;
+
+    @Option(names = { "-o", "--output" }, description = "The file to write to. If the name ends with '.gz', the file is compressed with gzip. If not specified, the CSV is written to "
+        + "standard output.")
+    private Path output;
+
+    @Option(names = { "--no-header" }, description = "Do not start the CSV with a line with the column names.")
+    private boolean noHeader;
+
+    @Override
+    public void doCall() throws Exception {
+        String query;
+        if (tableOrQuery.table != null) {
+            if (!TABLE_NAME.matcher(tableOrQuery.table).matches()) {
+                throw new IllegalArgumentException("Invalid table name: " + tableOrQuery.table);
+            }
+            query = "SELECT * FROM " + tableOrQuery.table;
+        }
+        else {
+            query = tableOrQuery.query;
+        }
+
+        var db = dbCmd.getDatabase();
+        db.connect();
+        try (var out = openOutput()) {
+            long rows = db.copyOut(query, !noHeader, out);
+            System.err.println("Exported " + rows + " row(s)" + (output == null ? "" : " to " + output));
+        }
+        finally {
+            db.close();
+        }
+    }
+
+    private OutputStream openOutput() throws Exception {
+        if (output == null) {
+            // Standard output must stay open for whatever comes after this command
+            return new BufferedOutputStream(new FilterOutputStream(System.out) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                }
+
+                @Override
+                public void close() {
+                    flushQuietly(out);
+                }
+            }, BUFFER_SIZE);
+        }
+        var out = new BufferedOutputStream(Files.newOutputStream(output), BUFFER_SIZE);
+        if (output.getFileName().toString().endsWith(".gz")) {
+            return new GZIPOutputStream(out, BUFFER_SIZE);
+        }
+        return out;
+    }
+
+    private static void flushQuietly(OutputStream out) {
+        try {
+            out.flush();
+        }
+        catch (Exception e) {
+            log.warn("Could not flush standard output: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.command.db;
+
+import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.dvcli.action.BatchProcessor;
+import nl.knaw.dans.dvcli.action.ConsoleReport;
+import nl.knaw.dans.dvcli.action.DeleteArchive;
+import nl.knaw.dans.dvcli.action.Pair;
+import nl.knaw.dans.dvcli.action.RateLimiter;
+import nl.knaw.dans.dvcli.action.RetentionEngine;
+import nl.knaw.dans.dvcli.action.TableMaintenance;
+import nl.knaw.dans.dvcli.command.AbstractCmd;
+import nl.knaw.dans.dvcli.command.DurationConverter;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.ParentCommand;
+
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+@Command(name = "retention",
+         mixinStandardHelpOptions = true,
+         description = """
+             Delete old rows from a log-like table, such as actionlogrecord, according to a retention policy: keep the newest rows of each owner and/or delete the rows that are older than \
+             a given age. The rows are deleted per owner in chunks, each committed separately, so the command can be interrupted and started again.
+             """,
+         sortOptions = false)
+@Slf4j
+public class DbRetention extends AbstractCmd {
+    private static final long DEFAULT_DELAY = 10L;
+
+    @ParentCommand
+    private DbCmd dbCmd;
+
+    @Option(names = { "-t", "--table" }, required = true, description = "The table to delete rows from.")
+    private String table;
+
+    @Option(names = { "--owner-column" }, description = "The column that identifies the owner of a row, e.g. 'user_id' or 'useridentifier'. If not specified, the policy applies to the "
+        + "table as a whole.")
+    private String ownerColumn;
+
+    @Option(names = { "--order-column" }, required = true, description = "The column that orders the rows from old to new, e.g. 'senddate' or 'starttime'.")
+    private String orderColumn;
+
+    @Option(names = { "--id-column" }, description = "The column that uniquely identifies a row (default: ${DEFAULT-VALUE}).", defaultValue = "id")
+    private String idColumn = "id";
+
+    @Option(names = { "--owner" }, description = "Only apply the policy to the rows of this owner.")
+    private String owner;
+
+    @Option(names = { "--keep" }, description = "The number of newest rows of each owner that are always kept (default: ${DEFAULT-VALUE}).", defaultValue = "0")
+    private int keep = 0;
+
+    @Option(names = { "--older-than" }, description = "Only delete rows that are older than this, e.g. '90d'.", converter = DurationConverter.class)
+    private Duration olderThan;
+
+    @Option(names = { "--chunk-size" }, description = "Maximum number of rows to delete in one statement (default: ${DEFAULT-VALUE}).", defaultValue = "10000")
+    private int chunkSize = 10000;
+
+    @Option(names = { "--chunk-delay" }, description = "Delay in milliseconds between chunks (default: ${DEFAULT-VALUE}).", defaultValue = "" + DEFAULT_DELAY)
+    private long chunkDelay = DEFAULT_DELAY;
+
+    @Option(names = { "-d", "--delay" }, description = "Delay in milliseconds between owners (default: ${DEFAULT-VALUE}).", defaultValue = "" + DEFAULT_DELAY)
+    private long delay = DEFAULT_DELAY;
+
+    @Option(names = { "--parallel" }, description = "Number of owners whose rows are deleted at the same time, each over its own database connection (default: ${DEFAULT-VALUE}).",
+            defaultValue = "1")
+    private int parallel = 1;
+
+    @Option(names = { "--max-rows-per-second" }, description = "The maximum number of rows to delete per second, over all parallel owners together. 0 means no limit "
+        + "(default: ${DEFAULT-VALUE}).", defaultValue = "0")
+    private int maxRowsPerSecond = 0;
+
+    @Option(names = { "--archive" }, description = "Write the rows to this CSV file before they are deleted. If the name ends with '.gz', the file is compressed with gzip. An existing "
+        + "file is appended to, so that an interrupted run can be started again with the same archive.")
+    private Path archiveFile;
+
+    @Option(names = { "--vacuum" }, description = "After deleting, run VACUUM (ANALYZE) on the table and report its size and dead tuples before and after.")
+    private boolean vacuum;
+
+    @Override
+    public void doCall() throws Exception {
+        if (keep < 0) {
+            throw new Exception("Number of rows to keep must not be negative, now it was " + keep + ".");
+        }
+        if (keep == 0 && olderThan == null) {
+            throw new Exception("Specify --keep, --older-than or both.");
+        }
+        if (olderThan != null && (olderThan.isNegative() || olderThan.isZero())) {
+            throw new Exception("Age must be positive, now it was " + olderThan + ".");
+        }
+        if (parallel < 1) {
+            throw new Exception("Number of parallel truncations must be at least 1, now it was " + parallel + ".");
+        }
+        if (maxRowsPerSecond < 0) {
+            throw new Exception("Maximum rows per second must not be negative, now it was " + maxRowsPerSecond + ".");
+        }
+        if (chunkSize < 1) {
+            throw new Exception("Chunk size must be at least 1, now it was " + chunkSize + ".");
+        }
+        if (owner != null && ownerColumn == null) {
+            throw new Exception("Option --owner requires --owner-column.");
+        }
+
+        var db = dbCmd.getDatabase();
+        db.connect();
+        try {
+            try (var archive = archiveFile == null ? null : DeleteArchive.open(archiveFile)) {
+                var engine = RetentionEngine.builder()
+                    .db(db)
+                    .table(table)
+                    .idColumn(idColumn)
+                    .ownerColumn(ownerColumn)
+                    .orderColumn(orderColumn)
+                    .keep(keep)
+                    .cutoff(olderThan == null ? null : Timestamp.from(Instant.now().minus(olderThan)))
+                    .chunkSize(chunkSize)
+                    .chunkDelay(chunkDelay)
+                    .rateLimiter(maxRowsPerSecond > 0 ? new RateLimiter(maxRowsPerSecond) : null)
+                    .archive(archive)
+                    .build();
+
+                BatchProcessor.<Object, String> builder()
+                    .labeledItems(getOwners(engine))
+                    .action(o -> {
+                        var result = engine.apply(o);
+                        return "Deleted " + result.deleted() + " row(s) from " + table + " in " + result.chunks() + " chunk(s), " + result.rowsPerSecond() + " rows/s";
+                    })
+                    .delay(delay)
+                    .parallelism(parallel)
+                    .report(new ConsoleReport<>())
+                    .build()
+                    .process();
+            }
+            if (vacuum) {
+                System.out.println(new TableMaintenance(db).vacuumAnalyze(table));
+            }
+        }
+        finally {
+            db.close();
+        }
+    }
+
+    private List<Pair<String, Object>> getOwners(RetentionEngine engine) throws Exception {
+        List<Pair<String, Object>> owners = new ArrayList<>();
+        if (ownerColumn == null) {
+            owners.add(new Pair<>(table, null));
+        }
+        else if (owner != null) {
+            engine.findOwner(owner).ifPresentOrElse(
+                o -> owners.add(new Pair<>(owner, o)),
+                () -> log.info("No rows in {} for owner {}", table, owner));
+        }
+        else {
+            for (var o : engine.findOwners()) {
+                owners.add(new Pair<>(String.valueOf(o), o));
+            }
+        }
+        return owners;
+    }
+}
@@ -34,4 +34,8 @@ public class DdDataverseCliConfig extends Configuration {
     @NotNull
     @Valid
     private DdDataverseDatabaseConfig db = new DdDataverseDatabaseConfig();
+
+    @NotNull
+    @Valid
+    private DdDataverseHttpConfig http = new DdDataverseHttpConfig();
 }
@@ -16,9 +16,12 @@
 
 package nl.knaw.dans.dvcli.config;
 
+import io.dropwizard.util.Duration;
 import lombok.Data;
 
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
 
 @Data
 public class DdDataverseDatabaseConfig {
@@ -34,5 +37,41 @@ public class DdDataverseDatabaseConfig {
 
     @NotEmpty
     private String password = "dvnsecret";
+
+    /**
+     * The maximum number of connections that are open at the same time.
+     */
+    @Min(1)
+    private int maxConnections = 4;
+
+    /**
+     * How long to wait for a connection, either a new one or one that is in use by another thread.
+     */
+    @NotNull
+    private Duration connectionTimeout = Duration.seconds(30);
+
+    /**
+     * How long an unused connection is kept open.
+     */
+    @NotNull
+    private Duration idleTimeout = Duration.minutes(5);
+
+    /**
+     * How long to wait for a connection that has been idle to respond to a validation check.
+     */
+    @NotNull
+    private Duration validationTimeout = Duration.seconds(5);
+
+    /**
+     * The maximum number of prepared statements that are kept per connection.
+     */
+    @Min(1)
+    private int statementCacheSize = 32;
+
+    /**
+     * The number of rows that are fetched at a time when a query result is streamed.
+     */
+    @Min(1)
+    private int fetchSize = 1000;
 }
 
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.config;
+
+import io.dropwizard.util.DataSize;
+import io.dropwizard.util.Duration;
+import lombok.Data;
+
+import javax.validation.constraints.NotNull;
+import java.nio.file.Path;
+
+@Data
+public class DdDataverseHttpCacheConfig {
+
+    /**
+     * Whether read-only commands keep the responses of the server on disk and reuse them.
+     */
+    private boolean enabled = false;
+
+    /**
+     * The directory in which the responses are kept. The responses may contain information that is only visible with the API key, so the directory should only be readable by its owner.
+     */
+    @NotNull
+    private Path directory = Path.of(System.getProperty("user.home"), ".cache", "dd-dataverse-cli");
+
+    /**
+     * How long a response without an ETag or Last-Modified header is used without asking the server again. Responses with one of these headers are revalidated on every use.
+     */
+    @NotNull
+    private Duration timeToLive = Duration.minutes(5);
+
+    /**
+     * The maximum total size of the cached responses. If it is exceeded, the least recently used responses are removed.
+     */
+    @NotNull
+    private DataSize maxSize = DataSize.mebibytes(100);
+
+    /**
+     * The maximum size of one response to cache. Larger responses are not cached.
+     */
+    @NotNull
+    private DataSize maxEntrySize = DataSize.mebibytes(10);
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.config;
+
+import io.dropwizard.util.DataSize;
+import io.dropwizard.util.Duration;
+import lombok.Data;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+@Data
+public class DdDataverseHttpConfig {
+
+    /**
+     * The maximum number of connections that are open at the same time, over all hosts.
+     */
+    @Min(1)
+    private int maxConnections = 20;
+
+    /**
+     * The maximum number of connections that are open at the same time to one host.
+     */
+    @Min(1)
+    private int maxConnectionsPerRoute = 10;
+
+    /**
+     * How long a connection is kept open for reuse after a response. If the server announces a shorter keep-alive, that is used instead.
+     */
+    @NotNull
+    private Duration keepAlive = Duration.seconds(30);
+
+    /**
+     * How long an unused connection is kept in the pool before it is closed.
+     */
+    @NotNull
+    private Duration idleTimeout = Duration.minutes(1);
+
+    /**
+     * How long a connection must have been unused before it is checked before reuse.
+     */
+    @NotNull
+    private Duration validateAfterInactivity = Duration.seconds(2);
+
+    /**
+     * How long to wait for a new connection to be established.
+     */
+    @NotNull
+    private Duration connectTimeout = Duration.seconds(10);
+
+    /**
+     * How long to wait for data from the server on an established connection.
+     */
+    @NotNull
+    private Duration readTimeout = Duration.minutes(5);
+
+    /**
+     * How long to wait for a connection from the pool when all connections are in use.
+     */
+    @NotNull
+    private Duration connectionRequestTimeout = Duration.seconds(30);
+
+    /**
+     * Whether to ask the server for compressed (gzip or deflate) responses. Compressed responses are decompressed while they are read.
+     */
+    private boolean compressResponses = true;
+
+    /**
+     * Whether to gzip request bodies of at least <code>requestCompressionThreshold</code> bytes. Only enable this if the server (or the proxy in front of it) accepts compressed requests.
+     */
+    private boolean compressRequests = false;
+
+    /**
+     * The minimum size of a JSON or XML request body to compress it, if <code>compressRequests</code> is enabled.
+     */
+    @NotNull
+    private DataSize requestCompressionThreshold = DataSize.kibibytes(8);
+
+    /**
+     * The on-disk response cache for read-only commands.
+     */
+    @NotNull
+    @Valid
+    private DdDataverseHttpCacheConfig cache = new DdDataverseHttpCacheConfig();
+}
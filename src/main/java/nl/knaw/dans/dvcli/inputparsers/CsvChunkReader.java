@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.inputparsers;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Splits CSV input into chunks of complete records, so that the chunks can be parsed independently of each other. A record ends at a line feed that is not inside a quoted value; quoted values
+ * that contain line breaks are therefore never split across chunks. As in the CSV parser, a value is only quoted if it starts with a quote; a quote inside an unquoted value is kept as it is. Empty lines are left out of the chunks, but their line numbers are kept, so that they can be reported.
+ */
+class CsvChunkReader implements Closeable {
+    private final Reader reader;
+    private final int recordsPerChunk;
+    private final char[] buffer = new char[8192];
+    private int position = 0;
+    private int limit = 0;
+    private long lineNumber = 1;
+    private long chunkIndex = 0;
+    private long headerLine = 0;
+
+    /**
+     * A chunk of complete records.
+     *
+     * @param index       the sequence number of the chunk, starting at 0
+     * @param text        the records, including their line terminators
+     * @param recordLines for each record in <code>text</code>, the line number in the input on which it starts
+     * @param emptyLines  the line numbers of empty lines that were skipped while reading this chunk
+     */
+    record Chunk(long index, String text, long[] recordLines, List<Long> emptyLines) {
+    }
+
+    CsvChunkReader(Reader reader, int recordsPerChunk) {
+        if (recordsPerChunk < 1) {
+            throw new IllegalArgumentException("Records per chunk must be at least 1, now it was " + recordsPerChunk);
+        }
+        this.reader = reader;
+        this.recordsPerChunk = recordsPerChunk;
+    }
+
+    /**
+     * Reads the first record of the input and returns its values as column names. Must be called before the first call to {@link #nextChunk()}.
+     *
+     * @return the column names, or an empty array if the input is empty
+     * @throws IOException if the input cannot be read
+     */
+    String[] readHeader() throws IOException {
+        var text = new StringBuilder();
+        long line;
+        while ((line = readRecord(text)) >= 0) {
+            if (!isEmptyLine(text, 0)) {
+                headerLine = line;
+                try (CSVParser parser = CSVParser.parse(text.toString(), CSVFormat.DEFAULT)) {
+                    List<String> names = new ArrayList<>();
+                    for (CSVRecord record : parser) {
+                        for (String name : record) {
+                            names.add(name);
+                        }
+                    }
+                    return names.toArray(new String[0]);
+                }
+            }
+            text.setLength(0);
+        }
+        return new String[0];
+    }
+
+    /**
+     * @return the line number of the header record, or 0 if the header has not been read (yet)
+     */
+    long getHeaderLine() {
+        return headerLine;
+    }
+
+    /**
+     * Reads the next chunk of at most <code>recordsPerChunk</code> records.
+     *
+     * @return the chunk, or null if the end of the input was reached
+     * @throws IOException if the input cannot be read
+     */
+    Chunk nextChunk() throws IOException {
+        var text = new StringBuilder();
+        var recordLines = new long[recordsPerChunk];
+        var emptyLines = new ArrayList<Long>();
+        int numberOfRecords = 0;
+        while (numberOfRecords < recordsPerChunk) {
+            int start = text.length();
+            long line = readRecord(text);
+            if (line < 0) {
+                break;
+            }
+            if (isEmptyLine(text, start)) {
+                text.setLength(start);
+                emptyLines.add(line);
+            }
+            else {
+                recordLines[numberOfRecords++] = line;
+            }
+        }
+        if (numberOfRecords == 0 && emptyLines.isEmpty()) {
+            return null;
+        }
+        return new Chunk(chunkIndex++, text.toString(), Arrays.copyOf(recordLines, numberOfRecords), emptyLines);
+    }
+
+    /**
+     * Appends the next record, including its line terminator, to <code>text</code>.
+     *
+     * @return the line number on which the record starts, or -1 if the end of the input was reached
+     */
+    private long readRecord(StringBuilder text) throws IOException {
+        int c = read();
+        if (c < 0) {
+            return -1;
+        }
+        long startLine = lineNumber;
+        // A quote only opens a quoted value at the start of a field; elsewhere in an unquoted value it is an ordinary character
+        boolean fieldStart = true;
+        boolean quoted = false;
+        // Inside a quoted value, a quote either closes the value or, if another quote follows, is an escaped quote
+        boolean quoteInQuoted = false;
+        while (c >= 0) {
+            text.append((char) c);
+            if (c == '\n') {
+                lineNumber++;
+            }
+            if (quoted) {
+                if (quoteInQuoted) {
+                    quoteInQuoted = false;
+                    if (c == '"') {
+                        c = read();
+                        continue;
+                    }
+                    quoted = false;
+                }
+                else {
+                    quoteInQuoted = c == '"';
+                    c = read();
+                    continue;
+                }
+            }
+            if (c == '\n') {
+                break;
+            }
+            if (c == '"' && fieldStart) {
+                quoted = true;
+            }
+            fieldStart = c == ',';
+            c = read();
+        }
+        return startLine;
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++];
+    }
+
+    private static boolean isEmptyLine(StringBuilder text, int start) {
+        for (int i = start; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c != '\r' && c != '\n') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -24,17 +24,29 @@ import org.apache.commons.csv.CSVRecord;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 @AllArgsConstructor
 public class FieldValuesParamsFileParser {
+    public static final int DEFAULT_RECORDS_PER_CHUNK = 1000;
+    private static final String PID_COLUMN = "PID";
+
     private final Path csvFile;
 
     /**
@@ -59,6 +71,14 @@ public class FieldValuesParamsFileParser {
                 CSVFormat.DEFAULT.builder()
                     .setHeader()
                     .setSkipHeaderRecord(true).build());
+            FieldValuesPlan plan;
+            try {
+                plan = FieldValuesPlan.compile(parser.getHeaderNames().toArray(new String[0]), PID_COLUMN);
+            }
+            catch (RuntimeException e) {
+                parser.close();
+                throw e;
+            }
             return StreamSupport.stream(parser.spliterator(), false).onClose(() -> {
                 try {
                     parser.close();
@@ -66,27 +86,183 @@ public class FieldValuesParamsFileParser {
                 catch (IOException e) {
                     throw new RuntimeException(e);
                 }
-            }).map(record -> parseRecord(record, new HashSet<>(parser.getHeaderMap().keySet())));
+            }).map(record -> parseRecord(record, plan));
         }
         catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
-    private Pair<String, Set<MetadataField>> parseRecord(CSVRecord record, Set<String> headers) {
-        String pid = record.get("PID");
-        if (pid == null || pid.isBlank()) {
-            throw new IllegalArgumentException("PID is missing in the parameters file");
+    /**
+     * Parse the parameters file using multiple threads. The file is split into chunks of whole records, which are parsed on a fork-join pool. The order of the rows in the file is preserved in the
+     * resulting stream. If <code>parallelism</code> is 1 or less, this is the same as {@link #parse()}.
+     *
+     * @param parallelism the number of threads to use for parsing
+     * @return a stream of pairs of PID and a list of MetadataFields
+     * @see #parse()
+     */
+    public Stream<Pair<String, Set<MetadataField>>> parse(int parallelism) {
+        return parse(parallelism, DEFAULT_RECORDS_PER_CHUNK);
+    }
+
+    /**
+     * Parse the parameters file using multiple threads.
+     *
+     * @param parallelism     the number of threads to use for parsing
+     * @param recordsPerChunk the number of records that is handed to a thread at once
+     * @return a stream of pairs of PID and a list of MetadataFields
+     * @see #parse(int)
+     */
+    public Stream<Pair<String, Set<MetadataField>>> parse(int parallelism, int recordsPerChunk) {
+        if (parallelism <= 1) {
+            return parse();
+        }
+        try {
+            var chunkReader = new CsvChunkReader(Files.newBufferedReader(csvFile, StandardCharsets.UTF_8), recordsPerChunk);
+            var header = chunkReader.readHeader();
+            FieldValuesPlan plan;
+            try {
+                plan = FieldValuesPlan.compile(header, PID_COLUMN);
+            }
+            catch (RuntimeException e) {
+                chunkReader.close();
+                throw e;
+            }
+            var pool = new ForkJoinPool(parallelism);
+            var iterator = new OrderedChunkIterator(chunkReader, header, plan, pool, 2 * parallelism);
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    pool.shutdownNow();
+                    try {
+                        chunkReader.close();
+                    }
+                    catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * The result of parsing one chunk. If a record fails to parse, the records before it are kept, so that the caller sees exactly the same rows as with sequential parsing before the exception is
+     * thrown.
+     */
+    private record ParsedChunk(List<Pair<String, Set<MetadataField>>> rows, RuntimeException failure) {
+    }
+
+    private ParsedChunk parseChunk(CsvChunkReader.Chunk chunk, String[] header, FieldValuesPlan plan) {
+        var rows = new ArrayList<Pair<String, Set<MetadataField>>>(chunk.recordLines().length);
+        try (CSVParser parser = CSVParser.parse(chunk.text(), CSVFormat.DEFAULT.builder().setHeader(header).build())) {
+            for (CSVRecord record : parser) {
+                rows.add(parseRecord(record, plan));
+            }
+            return new ParsedChunk(rows, null);
+        }
+        catch (IOException e) {
+            return new ParsedChunk(rows, new RuntimeException(e));
+        }
+        catch (RuntimeException e) {
+            return new ParsedChunk(rows, e);
+        }
+    }
+
+    /**
+     * Reads chunks on the consuming thread and keeps a bounded number of them in flight on the pool. Results are handed out in the order of the chunks, so the order of the input is preserved.
+     */
+    private class OrderedChunkIterator implements Iterator<Pair<String, Set<MetadataField>>> {
+        private final CsvChunkReader chunkReader;
+        private final String[] header;
+        private final FieldValuesPlan plan;
+        private final ForkJoinPool pool;
+        private final int maxChunksInFlight;
+        private final Deque<ForkJoinTask<ParsedChunk>> inFlight = new ArrayDeque<>();
+        private Iterator<Pair<String, Set<MetadataField>>> current = Collections.emptyIterator();
+        private RuntimeException pendingFailure;
+        private boolean endOfInput = false;
+
+        OrderedChunkIterator(CsvChunkReader chunkReader, String[] header, FieldValuesPlan plan, ForkJoinPool pool, int maxChunksInFlight) {
+            this.chunkReader = chunkReader;
+            this.header = header;
+            this.plan = plan;
+            this.pool = pool;
+            this.maxChunksInFlight = maxChunksInFlight;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                if (pendingFailure != null) {
+                    return true;
+                }
+                fill();
+                if (inFlight.isEmpty()) {
+                    return false;
+                }
+                var parsed = await(inFlight.poll());
+                current = parsed.rows().iterator();
+                pendingFailure = parsed.failure();
+            }
+            return true;
+        }
+
+        @Override
+        public Pair<String, Set<MetadataField>> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (!current.hasNext()) {
+                var failure = pendingFailure;
+                pendingFailure = null;
+                endOfInput = true;
+                inFlight.forEach(task -> task.cancel(true));
+                inFlight.clear();
+                throw failure;
+            }
+            return current.next();
         }
 
-        Map<String, String> keyValues = new HashMap<>();
-        for (String header : headers) {
-            if (header.equals("PID")) {
-                continue;
+        private void fill() {
+            try {
+                while (!endOfInput && inFlight.size() < maxChunksInFlight) {
+                    var chunk = chunkReader.nextChunk();
+                    if (chunk == null) {
+                        endOfInput = true;
+                    }
+                    else {
+                        inFlight.add(pool.submit(() -> parseChunk(chunk, header, plan)));
+                    }
+                }
+            }
+            catch (IOException e) {
+                throw new RuntimeException(e);
             }
-            keyValues.put(header, record.get(header));
         }
 
-        return new Pair<>(pid, new FieldValuesParser(keyValues).parse());
+        private ParsedChunk await(ForkJoinTask<ParsedChunk> task) {
+            try {
+                return task.get();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+            catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+    }
+
+    private Pair<String, Set<MetadataField>> parseRecord(CSVRecord record, FieldValuesPlan plan) {
+        String pid = record.get(PID_COLUMN);
+        if (pid == null || pid.isBlank()) {
+            throw new IllegalArgumentException("PID is missing in the parameters file");
+        }
+        if (record.size() < plan.getColumnCount()) {
+            throw new IllegalArgumentException("Row for " + pid + " has " + record.size() + " values, but the header has " + plan.getColumnCount() + " columns");
+        }
+        return new Pair<>(pid, plan.apply(record::get));
     }
 }
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.inputparsers;
+
+import lombok.AllArgsConstructor;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Checks a parameters file (see {@link FieldValuesParamsFileParser}) without processing it. The file is read once and the chunks are checked on a fork-join pool. All problems are reported, not
+ * just the first one: invalid column names, rows without a PID, rows without any field values, rows with fewer values than there are columns, empty lines and CSV syntax errors. After a syntax
+ * error the rest of its chunk is not checked.
+ */
+@AllArgsConstructor
+public class FieldValuesParamsFileValidator {
+    private static final String PID_COLUMN = "PID";
+
+    private final Path csvFile;
+    private final int parallelism;
+
+    /**
+     * A problem found in the parameters file.
+     *
+     * @param line    the line number on which the problem was found
+     * @param message a description of the problem
+     */
+    public record Problem(long line, String message) {
+        @Override
+        public String toString() {
+            return "line " + line + ": " + message;
+        }
+    }
+
+    /**
+     * Validates the parameters file.
+     *
+     * @return the problems found, ordered by line number; empty if the file is valid
+     * @throws IOException if the file cannot be read
+     */
+    public List<Problem> validate() throws IOException {
+        var problems = new ArrayList<Problem>();
+        var pool = new ForkJoinPool(Math.max(1, parallelism));
+        try (var chunkReader = new CsvChunkReader(Files.newBufferedReader(csvFile, StandardCharsets.UTF_8), FieldValuesParamsFileParser.DEFAULT_RECORDS_PER_CHUNK)) {
+            var header = chunkReader.readHeader();
+            if (header.length == 0) {
+                return List.of(new Problem(1, "The file is empty"));
+            }
+            problems.addAll(validateHeader(header, chunkReader.getHeaderLine()));
+
+            // Bound the number of chunks in memory
+            var inFlight = new ArrayDeque<ForkJoinTask<List<Problem>>>();
+            CsvChunkReader.Chunk chunk;
+            while ((chunk = chunkReader.nextChunk()) != null) {
+                var toValidate = chunk;
+                inFlight.add(pool.submit(() -> validateChunk(toValidate, header)));
+                if (inFlight.size() >= 2 * pool.getParallelism()) {
+                    problems.addAll(inFlight.poll().get());
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                problems.addAll(inFlight.poll().get());
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Validation was interrupted", e);
+        }
+        catch (ExecutionException e) {
+            throw new IOException("Could not validate " + csvFile, e.getCause());
+        }
+        finally {
+            pool.shutdownNow();
+        }
+        problems.sort(Comparator.comparingLong(Problem::line));
+        return problems;
+    }
+
+    private List<Problem> validateHeader(String[] header, long line) {
+        var problems = new ArrayList<Problem>();
+        boolean hasPid = false;
+        for (String name : header) {
+            if (PID_COLUMN.equals(name)) {
+                hasPid = true;
+            }
+            else if (!FieldValuesPlan.isValidName(name)) {
+                problems.add(new Problem(line, "Invalid field name: " + name));
+            }
+        }
+        if (!hasPid) {
+            problems.add(new Problem(line, "Column 'PID' is missing"));
+        }
+        return problems;
+    }
+
+    private List<Problem> validateChunk(CsvChunkReader.Chunk chunk, String[] header) {
+        var problems = new ArrayList<Problem>();
+        for (var line : chunk.emptyLines()) {
+            problems.add(new Problem(line, "Empty line"));
+        }
+        int i = 0;
+        try (CSVParser parser = CSVParser.parse(chunk.text(), CSVFormat.DEFAULT)) {
+            for (CSVRecord record : parser) {
+                validateRecord(record, header, chunk.recordLines()[i++], problems);
+            }
+        }
+        catch (IOException | UncheckedIOException | IllegalStateException e) {
+            // The parser cannot recover from a syntax error, so the rest of the chunk is not checked
+            var lines = chunk.recordLines();
+            long line = lines.length == 0 ? 0 : lines[Math.min(i, lines.length - 1)];
+            problems.add(new Problem(line, "Invalid CSV: " + syntaxErrorMessage(e)));
+        }
+        return problems;
+    }
+
+    private static String syntaxErrorMessage(Exception e) {
+        // The record iterator wraps the parser's IOException
+        var cause = e.getCause() instanceof IOException ? e.getCause() : e;
+        return cause.getMessage();
+    }
+
+    private void validateRecord(CSVRecord record, String[] header, long line, List<Problem> problems) {
+        if (record.size() < header.length) {
+            problems.add(new Problem(line, "Row has " + record.size() + " values, but the header has " + header.length + " columns"));
+        }
+        boolean hasValues = false;
+        for (int column = 0; column < header.length && column < record.size(); column++) {
+            var value = record.get(column);
+            if (PID_COLUMN.equals(header[column])) {
+                if (StringUtils.isBlank(value)) {
+                    problems.add(new Problem(line, "PID is missing"));
+                }
+            }
+            else if (StringUtils.isNotBlank(value)) {
+                hasValues = true;
+            }
+        }
+        if (!hasValues) {
+            problems.add(new Problem(line, "Row has no field values"));
+        }
+    }
+}
@@ -16,95 +16,23 @@
 package nl.knaw.dans.dvcli.inputparsers;
 
 import lombok.AllArgsConstructor;
-import nl.knaw.dans.lib.dataverse.CompoundFieldBuilder;
 import nl.knaw.dans.lib.dataverse.model.dataset.MetadataField;
-import nl.knaw.dans.lib.dataverse.model.dataset.PrimitiveMultiValueField;
-import nl.knaw.dans.lib.dataverse.model.dataset.PrimitiveSingleValueField;
-import org.apache.commons.lang3.StringUtils;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+/**
+ * Converts field names and values into metadata fields. A field name is either a primitive field name, e.g. 'alternativeTitle', or the name of a compound field followed by a dot and the name of
+ * a subfield, e.g. 'author.authorName'. An asterisk (*) at the end of the (parent) field name indicates that the field is multi-value, i.e. repeatable.
+ *
+ * @see FieldValuesPlan
+ */
 @AllArgsConstructor
 public class FieldValuesParser {
     private final Map<String, String> keyValues;
 
     public Set<MetadataField> parse() {
-        for (var key : keyValues.keySet()) {
-            checkValidName(key);
-        }
-
-        Map<String, Map<String, String>> compoundFields = new HashMap<>();
-        List<String> keysToRemove = new ArrayList<>();
-        for (var key : keyValues.keySet()) {
-            if (key.contains(".")) {
-                String[] split = key.split("\\.", 2);
-                String parent = split[0];
-                String child = split[1];
-                if (!compoundFields.containsKey(parent)) {
-                    compoundFields.put(parent, new HashMap<>());
-                }
-                compoundFields.get(parent).put(child, keyValues.get(key));
-                keysToRemove.add(key);
-            }
-        }
-        for (var key : keysToRemove) {
-            keyValues.remove(key);
-        }
-
-        Set<MetadataField> result = new HashSet<>();
-
-        for (var key : keyValues.keySet()) {
-            if (StringUtils.isNotBlank(keyValues.get(key))) {
-                if (key.endsWith("*")) {
-                    result.add(new PrimitiveMultiValueField(key.substring(0, key.length() - 1), List.of(keyValues.get(key))));
-                }
-                else {
-                    result.add(new PrimitiveSingleValueField(key, keyValues.get(key)));
-                }
-            }
-        }
-
-        for (var parent : compoundFields.keySet()) {
-            Map<String, String> subfields = compoundFields.get(parent);
-            if (parent.endsWith("*")) {
-                var builder = new CompoundFieldBuilder(parent.substring(0, parent.length() - 1), true);
-                boolean hasValues = false;
-                for (var subfield : subfields.keySet()) {
-                    if (StringUtils.isNotBlank(subfields.get(subfield))) {
-                        builder.addSubfield(subfield, subfields.get(subfield));
-                        hasValues = true;
-                    }
-                }
-                if (hasValues) {
-                    result.add(builder.build());
-                }
-            }
-            else {
-                var builder = new CompoundFieldBuilder(parent, false);
-                boolean hasValues = false;
-                for (var subfield : subfields.keySet()) {
-                    if (StringUtils.isNotBlank(subfields.get(subfield))) {
-                        builder.addSubfield(subfield, subfields.get(subfield));
-                        hasValues = true;
-                    }
-                }
-                if (hasValues) {
-                    result.add(builder.build());
-                }
-            }
-        }
-
-        return result;
-    }
-
-    private void checkValidName(String name) {
-        if (!name.matches("[a-zA-Z0-9]+\\*?(\\.[a-zA-Z0-9]+)?")) {
-            throw new IllegalArgumentException("Invalid field name: " + name);
-        }
+        var names = keyValues.keySet().toArray(new String[0]);
+        return FieldValuesPlan.compile(names).apply(i -> keyValues.get(names[i]));
     }
 }
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.inputparsers;
+
+import nl.knaw.dans.lib.dataverse.CompoundFieldBuilder;
+import nl.knaw.dans.lib.dataverse.model.dataset.MetadataField;
+import nl.knaw.dans.lib.dataverse.model.dataset.PrimitiveMultiValueField;
+import nl.knaw.dans.lib.dataverse.model.dataset.PrimitiveSingleValueField;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntFunction;
+import java.util.regex.Pattern;
+
+/**
+ * A plan for converting rows of field values into metadata fields. The column names are analyzed once, when the plan is compiled; applying the plan to a row only looks up the values by column
+ * index. See {@link FieldValuesParser} for the format of the column names.
+ */
+public class FieldValuesPlan {
+    private static final Pattern VALID_NAME = Pattern.compile("[a-zA-Z0-9]+\\*?(\\.[a-zA-Z0-9]+)?");
+
+    private final int columnCount;
+    private final PrimitiveSlot[] primitives;
+    private final CompoundSlot[] compounds;
+
+    private record PrimitiveSlot(int column, String typeName, boolean multiple) {
+    }
+
+    private record CompoundSlot(String typeName, boolean multiple, int[] columns, String[] subfields) {
+    }
+
+    private FieldValuesPlan(int columnCount, PrimitiveSlot[] primitives, CompoundSlot[] compounds) {
+        this.columnCount = columnCount;
+        this.primitives = primitives;
+        this.compounds = compounds;
+    }
+
+    /**
+     * Compiles a plan for the given column names. If a name occurs more than once, the last column with that name is used.
+     *
+     * @param columnNames    the column names, in column order
+     * @param ignoredColumns names of columns that do not contain field values, e.g. 'PID'
+     * @return the plan
+     * @throws IllegalArgumentException if one of the column names is not a valid field name
+     */
+    public static FieldValuesPlan compile(String[] columnNames, String... ignoredColumns) {
+        var ignored = Set.of(ignoredColumns);
+        Map<String, Integer> columns = new LinkedHashMap<>();
+        for (int i = 0; i < columnNames.length; i++) {
+            if (!ignored.contains(columnNames[i])) {
+                checkValidName(columnNames[i]);
+                columns.put(columnNames[i], i);
+            }
+        }
+
+        List<PrimitiveSlot> primitives = new ArrayList<>();
+        Map<String, Map<String, Integer>> subfieldsByParent = new LinkedHashMap<>();
+        for (var column : columns.entrySet()) {
+            String name = column.getKey();
+            int dot = name.indexOf('.');
+            if (dot < 0) {
+                boolean multiple = name.endsWith("*");
+                primitives.add(new PrimitiveSlot(column.getValue(), multiple ? name.substring(0, name.length() - 1) : name, multiple));
+            }
+            else {
+                subfieldsByParent.computeIfAbsent(name.substring(0, dot), k -> new LinkedHashMap<>())
+                    .put(name.substring(dot + 1), column.getValue());
+            }
+        }
+
+        List<CompoundSlot> compounds = new ArrayList<>();
+        for (var parent : subfieldsByParent.entrySet()) {
+            String name = parent.getKey();
+            boolean multiple = name.endsWith("*");
+            var subfields = parent.getValue();
+            compounds.add(new CompoundSlot(multiple ? name.substring(0, name.length() - 1) : name, multiple,
+                subfields.values().stream().mapToInt(Integer::intValue).toArray(),
+                subfields.keySet().toArray(new String[0])));
+        }
+
+        return new FieldValuesPlan(columnNames.length, primitives.toArray(new PrimitiveSlot[0]), compounds.toArray(new CompoundSlot[0]));
+    }
+
+    /**
+     * @return the number of columns the plan was compiled for, including the ignored columns
+     */
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    /**
+     * Applies the plan to one row. Blank values are skipped; a compound field is only created if at least one of its subfields has a value.
+     *
+     * @param values provides the value in the column with the given index
+     * @return the metadata fields for this row
+     */
+    public Set<MetadataField> apply(IntFunction<String> values) {
+        Set<MetadataField> result = new HashSet<>();
+        for (var primitive : primitives) {
+            String value = values.apply(primitive.column());
+            if (StringUtils.isNotBlank(value)) {
+                if (primitive.multiple()) {
+                    result.add(new PrimitiveMultiValueField(primitive.typeName(), List.of(value)));
+                }
+                else {
+                    result.add(new PrimitiveSingleValueField(primitive.typeName(), value));
+                }
+            }
+        }
+        for (var compound : compounds) {
+            CompoundFieldBuilder builder = null;
+            for (int i = 0; i < compound.columns().length; i++) {
+                String value = values.apply(compound.columns()[i]);
+                if (StringUtils.isNotBlank(value)) {
+                    if (builder == null) {
+                        builder = new CompoundFieldBuilder(compound.typeName(), compound.multiple());
+                    }
+                    builder.addSubfield(compound.subfields()[i], value);
+                }
+            }
+            if (builder != null) {
+                result.add(builder.build());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param name a column name
+     * @return whether the name is a valid (primitive or compound) field name
+     */
+    public static boolean isValidName(String name) {
+        return VALID_NAME.matcher(name).matches();
+    }
+
+    private static void checkValidName(String name) {
+        if (!isValidName(name)) {
+            throw new IllegalArgumentException("Invalid field name: " + name);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.action;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AwaitingUnlockReportTest {
+
+    private static class CollectingReport implements Report<String, String> {
+        final List<String> reported = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void reportSuccess(String label, String item, String result) {
+            reported.add(label + ": " + result);
+        }
+
+        @Override
+        public void reportFailure(String label, String item, Exception e) {
+            reported.add(label + ": FAILED " + e.getMessage());
+        }
+    }
+
+    @Test
+    public void items_are_reported_when_unlocked_without_blocking_the_caller() throws Exception {
+        var checks = new AtomicInteger();
+        var inProgress = new Semaphore(2);
+        var collected = new CollectingReport();
+        try (var tracker = new LockTracker(10, 10_000)) {
+            var report = new AwaitingUnlockReport<String, String>(tracker, item -> () -> checks.incrementAndGet() < 3, inProgress, collected);
+            inProgress.acquire();
+            report.reportSuccess("a", "a", "published");
+            // The caller is not blocked until the item is unlocked
+            assertThat(collected.reported).isEmpty();
+
+            report.awaitAll();
+        }
+
+        assertThat(collected.reported).containsExactly("a: published");
+        assertThat(inProgress.availablePermits()).isEqualTo(2);
+    }
+
+    @Test
+    public void items_that_stay_locked_are_reported_as_failed() throws Exception {
+        var inProgress = new Semaphore(1);
+        var collected = new CollectingReport();
+        try (var tracker = new LockTracker(10, 50)) {
+            var report = new AwaitingUnlockReport<String, String>(tracker, item -> () -> true, inProgress, collected);
+            inProgress.acquire();
+            report.reportSuccess("a", "a", "published");
+            report.reportFailure("b", "b", new IllegalStateException("not found"));
+            report.awaitAll();
+        }
+
+        assertThat(collected.reported).containsExactly("b: FAILED not found", "a: FAILED Still locked after 50 ms");
+        assertThat(inProgress.availablePermits()).isEqualTo(1);
+    }
+}
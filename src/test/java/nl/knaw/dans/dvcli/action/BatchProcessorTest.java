@@ -22,7 +22,10 @@ import nl.knaw.dans.lib.dataverse.DatasetApi;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -207,4 +210,48 @@ public class BatchProcessorTest extends AbstractCapturingTest {
         assertThat(stdout.toString()).isEqualTo("");
         assertThat(messagesOf(logged)).containsExactly();
     }
+
+    @Test
+    public void batchProcessor_processes_items_in_parallel_up_to_the_limit() {
+        var running = new AtomicInteger();
+        var maxRunning = new AtomicInteger();
+        BatchProcessor.<Integer, String> builder()
+            .labeledItems(IntStream.range(0, 12).mapToObj(i -> new Pair<>("item" + i, i)).toList())
+            .action(i -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                Thread.sleep(20);
+                running.decrementAndGet();
+                return "ok" + i;
+            })
+            .report(new ConsoleReport<>())
+            .delay(0L)
+            .parallelism(3)
+            .build()
+            .process();
+
+        assertThat(maxRunning.get()).isBetween(2, 3);
+        assertThat(stderr.toString().split(" OK\\. ")).hasSize(12);
+        assertThat(messagesOf(logged))
+            .startsWith("INFO  Starting batch processing of 12 items")
+            .endsWith("INFO  Finished batch processing of 12 items");
+    }
+
+    @Test
+    public void batchProcessor_calls_start_and_finish_hooks_around_the_items() {
+        var events = new ArrayList<String>();
+        BatchProcessor.<Integer, String> builder()
+            .labeledItems(List.of(new Pair<>("a", 1), new Pair<>("b", 2)))
+            .action(i -> {
+                events.add("item" + i);
+                return "ok";
+            })
+            .delay(0L)
+            .parallelism(1)
+            .onStart(parallelism -> events.add("start " + parallelism))
+            .onFinish(() -> events.add("finish"))
+            .build()
+            .process();
+
+        assertThat(events).containsExactly("start 1", "item1", "item2", "finish");
+    }
 }
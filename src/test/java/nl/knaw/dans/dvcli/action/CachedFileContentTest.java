@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.action;
+
+import nl.knaw.dans.dvcli.AbstractTestWithTestDir;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class CachedFileContentTest extends AbstractTestWithTestDir {
+
+    @Test
+    public void file_is_read_once() throws Exception {
+        var file = Files.createDirectories(testDir).resolve("dataset.json");
+        Files.writeString(file, "{\"a\":1}");
+        var content = new CachedFileContent(file);
+
+        assertThat(content.get()).isEqualTo("{\"a\":1}");
+        Files.writeString(file, "{\"a\":2}");
+        assertThat(content.get()).isEqualTo("{\"a\":1}");
+    }
+
+    @Test
+    public void failed_read_is_retried() throws Exception {
+        var file = testDir.resolve("dataset.json");
+        var content = new CachedFileContent(file);
+
+        assertThatThrownBy(content::get).isInstanceOf(IOException.class);
+        Files.createDirectories(testDir);
+        Files.writeString(file, "{\"a\":1}");
+        assertThat(content.get()).isEqualTo("{\"a\":1}");
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.action;
+
+import com.sun.net.httpserver.HttpServer;
+import nl.knaw.dans.dvcli.AbstractTestWithTestDir;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CachingHttpClientTest extends AbstractTestWithTestDir {
+    private HttpServer server;
+    private URI baseUrl;
+    private final List<String> served = new ArrayList<>();
+    private String content = "{\"status\":\"OK\"}";
+
+    @BeforeEach
+    public void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        // Supports conditional requests with an ETag that is derived from the content
+        server.createContext("/etag", exchange -> {
+            var etag = "\"" + content.hashCode() + "\"";
+            exchange.getResponseHeaders().add("ETag", etag);
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                served.add("304");
+                exchange.sendResponseHeaders(304, -1);
+            }
+            else {
+                served.add("200");
+                var body = content.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            }
+            exchange.close();
+        });
+        server.createContext("/plain", exchange -> {
+            served.add(exchange.getRequestMethod() + " 200");
+            var body = content.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        baseUrl = URI.create("http://localhost:" + server.getAddress().getPort());
+    }
+
+    @AfterEach
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void unchanged_resource_with_etag_is_revalidated_with_a_304() throws Exception {
+        try (var client = createClient(60_000)) {
+            client.enable();
+            assertThat(get(client, "/etag", null)).isEqualTo("{\"status\":\"OK\"}");
+            assertThat(get(client, "/etag", null)).isEqualTo("{\"status\":\"OK\"}");
+            content = "{\"status\":\"CHANGED\"}";
+            assertThat(get(client, "/etag", null)).isEqualTo("{\"status\":\"CHANGED\"}");
+
+            assertThat(served).containsExactly("200", "304", "200");
+            assertThat(client.getStatistics()).isEqualTo("cache: 0 hit(s), 1 revalidated, 2 miss(es)");
+        }
+    }
+
+    @Test
+    public void resource_without_validators_is_reused_until_the_time_to_live_has_passed() throws Exception {
+        try (var client = createClient(60_000)) {
+            client.enable();
+            get(client, "/plain", null);
+            content = "{\"status\":\"CHANGED\"}";
+            assertThat(get(client, "/plain", null)).isEqualTo("{\"status\":\"OK\"}");
+            assertThat(served).containsExactly("GET 200");
+        }
+        try (var client = createClient(0)) {
+            client.enable();
+            assertThat(get(client, "/plain", null)).isEqualTo("{\"status\":\"CHANGED\"}");
+            assertThat(served).containsExactly("GET 200", "GET 200");
+        }
+    }
+
+    @Test
+    public void responses_are_cached_per_api_key() throws Exception {
+        try (var client = createClient(60_000)) {
+            client.enable();
+            get(client, "/plain", "key1");
+            get(client, "/plain", "key2");
+            get(client, "/plain", "key1");
+
+            assertThat(served).containsExactly("GET 200", "GET 200");
+        }
+    }
+
+    @Test
+    public void nothing_is_cached_until_enabled_and_only_get_requests_are_cached() throws Exception {
+        try (var client = createClient(60_000)) {
+            get(client, "/plain", null);
+            client.enable();
+            try (var response = client.execute(new HttpPost(baseUrl.resolve("/plain")))) {
+                EntityUtils.consume(response.getEntity());
+            }
+            try (var response = client.execute(new HttpPost(baseUrl.resolve("/plain")))) {
+                EntityUtils.consume(response.getEntity());
+            }
+
+            assertThat(served).containsExactly("GET 200", "POST 200", "POST 200");
+        }
+    }
+
+    private CachingHttpClient createClient(long timeToLiveMillis) {
+        return new CachingHttpClient(HttpClients.createDefault(), new ResponseCache(testDir, 1024 * 1024), timeToLiveMillis, 1024);
+    }
+
+    private String get(CachingHttpClient client, String path, String apiKey) throws Exception {
+        var get = new HttpGet(baseUrl.resolve(path));
+        if (apiKey != null) {
+            get.setHeader("X-Dataverse-key", apiKey);
+        }
+        try (var response = client.execute(get)) {
+            return EntityUtils.toString(response.getEntity());
+        }
+    }
+}
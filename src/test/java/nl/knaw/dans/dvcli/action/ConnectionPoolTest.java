@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.action;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ConnectionPoolTest {
+
+    @Test
+    public void onClose_is_called_for_connections_closed_by_the_pool() throws Exception {
+        var connection = mock(Connection.class);
+        when(connection.getAutoCommit()).thenReturn(true);
+        List<Connection> closed = new ArrayList<>();
+        var pool = new ConnectionPool(() -> connection, 1, 1000, 60_000, 1, closed::add);
+
+        pool.release(pool.borrow());
+        assertThat(closed).isEmpty();
+
+        pool.close();
+        assertThat(closed).containsExactly(connection);
+    }
+
+    @Test
+    public void onClose_is_called_for_connections_released_after_the_pool_was_closed() throws Exception {
+        var connection = mock(Connection.class);
+        when(connection.getAutoCommit()).thenReturn(true);
+        List<Connection> closed = new ArrayList<>();
+        var pool = new ConnectionPool(() -> connection, 1, 1000, 60_000, 1, closed::add);
+
+        var borrowed = pool.borrow();
+        pool.close();
+        assertThat(closed).isEmpty();
+
+        pool.release(borrowed);
+        assertThat(closed).containsExactly(connection);
+    }
+
+    @Test
+    public void onClose_is_called_for_evicted_idle_connections() throws Exception {
+        var connection = mock(Connection.class);
+        when(connection.getAutoCommit()).thenReturn(true);
+        List<Connection> closed = new ArrayList<>();
+        var pool = new ConnectionPool(() -> connection, 1, 1000, 0, 1, closed::add);
+
+        pool.release(pool.borrow());
+        Thread.sleep(5);
+        pool.release(pool.borrow());
+
+        assertThat(closed).contains(connection);
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.action;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CostOrderingTest {
+
+    @Test
+    public void most_expensive_items_come_first_and_unknown_costs_last() {
+        var costs = Map.of("a", 10L, "b", 300L, "d", 10L, "e", 50L);
+        var items = List.of(new Pair<>("a", "a"), new Pair<>("b", "b"), new Pair<>("c", "c"), new Pair<>("d", "d"), new Pair<>("e", "e"));
+
+        var ordered = CostOrdering.mostExpensiveFirst(items, item -> {
+            if (!costs.containsKey(item)) {
+                throw new IllegalStateException("Dataset not found");
+            }
+            return costs.get(item);
+        }, 3);
+
+        assertThat(ordered.stream().map(Pair::getFirst)).containsExactly("b", "e", "a", "d", "c");
+    }
+}
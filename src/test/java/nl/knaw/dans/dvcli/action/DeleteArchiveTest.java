@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.action;
+
+import nl.knaw.dans.dvcli.AbstractTestWithTestDir;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+
+public class DeleteArchiveTest extends AbstractTestWithTestDir {
+
+    @Test
+    public void rerun_appends_to_the_existing_archive_without_a_second_header() throws Exception {
+        Files.createDirectories(testDir);
+        var file = testDir.resolve("archive.csv");
+        var database = databaseReturning("11,7\n", "12,7\n");
+
+        try (var archive = DeleteArchive.open(file)) {
+            archive.deleteAndArchive(database, "DELETE 1");
+        }
+        try (var archive = DeleteArchive.open(file)) {
+            archive.deleteAndArchive(database, "DELETE 2");
+        }
+
+        assertThat(Files.readString(file)).isEqualTo("id,user_id\n11,7\n12,7\n");
+    }
+
+    @Test
+    public void rerun_appends_a_new_member_to_a_gzip_archive() throws Exception {
+        Files.createDirectories(testDir);
+        var file = testDir.resolve("archive.csv.gz");
+        var database = databaseReturning("11,7\n", "12,7\n");
+
+        try (var archive = DeleteArchive.open(file)) {
+            archive.deleteAndArchive(database, "DELETE 1");
+        }
+        try (var archive = DeleteArchive.open(file)) {
+            archive.deleteAndArchive(database, "DELETE 2");
+        }
+
+        try (var in = new GZIPInputStream(Files.newInputStream(file))) {
+            assertThat(IOUtils.toString(in, StandardCharsets.UTF_8)).isEqualTo("id,user_id\n11,7\n12,7\n");
+        }
+    }
+
+    private static Database databaseReturning(String... rows) throws Exception {
+        var database = Mockito.mock(Database.class);
+        var next = new int[] { 0 };
+        Mockito.when(database.copyOutAndCommit(anyString(), anyBoolean(), any())).thenAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(2);
+            if ((boolean) invocation.getArgument(1)) {
+                out.write("id,user_id\n".getBytes(StandardCharsets.UTF_8));
+            }
+            out.write(rows[next[0]++].getBytes(StandardCharsets.UTF_8));
+            return 1L;
+        });
+        return database;
+    }
+}
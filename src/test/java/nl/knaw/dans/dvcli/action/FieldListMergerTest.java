@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.action;
+
+import nl.knaw.dans.lib.dataverse.CompoundFieldBuilder;
+import nl.knaw.dans.lib.dataverse.model.dataset.CompoundMultiValueField;
+import nl.knaw.dans.lib.dataverse.model.dataset.MetadataField;
+import nl.knaw.dans.lib.dataverse.model.dataset.PrimitiveMultiValueField;
+import nl.knaw.dans.lib.dataverse.model.dataset.PrimitiveSingleValueField;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FieldListMergerTest {
+
+    @Test
+    public void merge_should_put_rows_with_different_fields_in_one_field_list() {
+        List<Set<MetadataField>> rows = List.of(
+            Set.of(new PrimitiveSingleValueField("title", "foo")),
+            Set.of(new PrimitiveSingleValueField("subtitle", "bar")));
+
+        assertThat(FieldListMerger.merge(rows)).containsExactly(List.of(
+            new PrimitiveSingleValueField("title", "foo"),
+            new PrimitiveSingleValueField("subtitle", "bar")));
+    }
+
+    @Test
+    public void merge_should_combine_values_of_multi_value_fields() {
+        List<Set<MetadataField>> rows = List.of(
+            Set.of(new PrimitiveMultiValueField("keyword", List.of("a"))),
+            Set.of(new PrimitiveMultiValueField("keyword", List.of("b"))),
+            Set.of(new PrimitiveMultiValueField("keyword", List.of("a"))));
+
+        assertThat(FieldListMerger.merge(rows)).containsExactly(List.of(
+            new PrimitiveMultiValueField("keyword", List.of("a", "b"))));
+    }
+
+    @Test
+    public void merge_should_start_a_new_field_list_for_conflicting_single_value_fields() {
+        List<Set<MetadataField>> rows = List.of(
+            Set.of(new PrimitiveSingleValueField("title", "foo")),
+            Set.of(new PrimitiveSingleValueField("title", "bar")),
+            Set.of(new PrimitiveSingleValueField("subtitle", "baz")));
+
+        assertThat(FieldListMerger.merge(rows)).containsExactly(
+            List.of(new PrimitiveSingleValueField("title", "foo"), new PrimitiveSingleValueField("subtitle", "baz")),
+            List.of(new PrimitiveSingleValueField("title", "bar")));
+    }
+
+    @Test
+    public void merge_should_combine_values_of_multi_value_compound_fields() {
+        var alice = (CompoundMultiValueField) new CompoundFieldBuilder("author", true).addSubfield("authorName", "Alice").build();
+        var bob = (CompoundMultiValueField) new CompoundFieldBuilder("author", true).addSubfield("authorName", "Bob").build();
+        var carol = (CompoundMultiValueField) new CompoundFieldBuilder("author", true).addSubfield("authorName", "Carol").build();
+        List<Set<MetadataField>> rows = List.of(
+            Set.of(alice),
+            Set.of(bob),
+            Set.of(carol),
+            Set.of(alice));
+
+        assertThat(FieldListMerger.merge(rows)).containsExactly(List.of(
+            new CompoundMultiValueField("author", List.of(alice.getValue().get(0), bob.getValue().get(0), carol.getValue().get(0)))));
+    }
+}
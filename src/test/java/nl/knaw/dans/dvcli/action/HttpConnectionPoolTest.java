@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.action;
+
+import com.sun.net.httpserver.HttpServer;
+import io.dropwizard.util.DataSize;
+import nl.knaw.dans.dvcli.config.DdDataverseHttpConfig;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.util.EntityUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HttpConnectionPoolTest {
+    private HttpServer server;
+    private URI baseUrl;
+    private String requestEncoding;
+    private String requestBody;
+
+    @BeforeEach
+    public void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            requestEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+            var in = "gzip".equals(requestEncoding) ? new GZIPInputStream(exchange.getRequestBody()) : exchange.getRequestBody();
+            requestBody = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            var body = "{\"status\":\"OK\"}".getBytes(StandardCharsets.UTF_8);
+            var acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                var compressed = new ByteArrayOutputStream();
+                try (var gzip = new GZIPOutputStream(compressed)) {
+                    gzip.write(body);
+                }
+                body = compressed.toByteArray();
+                exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        baseUrl = URI.create("http://localhost:" + server.getAddress().getPort());
+    }
+
+    @AfterEach
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void requests_reuse_one_connection() throws Exception {
+        try (var pool = new HttpConnectionPool(new DdDataverseHttpConfig(), baseUrl)) {
+            for (int i = 0; i < 3; i++) {
+                try (var response = pool.getHttpClient().execute(new HttpGet(baseUrl.resolve("/api/info/version")))) {
+                    EntityUtils.consume(response.getEntity());
+                }
+            }
+
+            assertThat(pool.getStatistics()).isEqualTo("HTTP: 3 request(s) over 1 connection(s); pool: 0 leased, 1 available, 0 pending, max 20");
+        }
+    }
+
+    @Test
+    public void prewarm_opens_connections_up_to_the_route_limit() throws Exception {
+        var config = new DdDataverseHttpConfig();
+        config.setMaxConnectionsPerRoute(2);
+        try (var pool = new HttpConnectionPool(config, baseUrl)) {
+            pool.prewarm(4);
+
+            assertThat(pool.getStatistics()).isEqualTo("HTTP: 0 request(s) over 0 connection(s); pool: 0 leased, 2 available, 0 pending, max 20");
+        }
+    }
+
+    @Test
+    public void responses_are_compressed_and_decompressed() throws Exception {
+        try (var pool = new HttpConnectionPool(new DdDataverseHttpConfig(), baseUrl);
+            var response = pool.getHttpClient().execute(new HttpGet(baseUrl.resolve("/api/info/version")))) {
+            assertThat(EntityUtils.toString(response.getEntity())).isEqualTo("{\"status\":\"OK\"}");
+        }
+    }
+
+    @Test
+    public void large_json_request_bodies_are_compressed_if_enabled() throws Exception {
+        var config = new DdDataverseHttpConfig();
+        config.setCompressRequests(true);
+        config.setRequestCompressionThreshold(DataSize.bytes(100));
+        var large = "{\"title\":\"" + "x".repeat(200) + "\"}";
+        try (var pool = new HttpConnectionPool(config, baseUrl)) {
+            post(pool, "{}");
+            assertThat(requestEncoding).isNull();
+            assertThat(requestBody).isEqualTo("{}");
+
+            post(pool, large);
+            assertThat(requestEncoding).isEqualTo("gzip");
+            assertThat(requestBody).isEqualTo(large);
+        }
+    }
+
+    @Test
+    public void request_bodies_are_not_compressed_by_default() throws Exception {
+        var large = "{\"title\":\"" + "x".repeat(20000) + "\"}";
+        try (var pool = new HttpConnectionPool(new DdDataverseHttpConfig(), baseUrl)) {
+            post(pool, large);
+            assertThat(requestEncoding).isNull();
+            assertThat(requestBody).isEqualTo(large);
+        }
+    }
+
+    private void post(HttpConnectionPool pool, String json) throws Exception {
+        var post = new HttpPost(baseUrl.resolve("/api/dataverses/root/datasets"));
+        post.setEntity(new StringEntity(json, ContentType.APPLICATION_JSON));
+        try (var response = pool.getHttpClient().execute(post)) {
+            EntityUtils.consume(response.getEntity());
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.action;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class LabelGrouperTest {
+
+    private static Stream<Pair<String, Integer>> items(Object... labelsAndValues) {
+        var builder = Stream.<Pair<String, Integer>> builder();
+        for (int i = 0; i < labelsAndValues.length; i += 2) {
+            builder.add(new Pair<>((String) labelsAndValues[i], (Integer) labelsAndValues[i + 1]));
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void group_should_merge_items_with_the_same_label_in_input_order() {
+        var groups = new LabelGrouper<Integer>(10).group(items("a", 1, "b", 2, "a", 3, "c", 4, "b", 5)).toList();
+
+        assertThat(groups).containsExactly(
+            new Pair<>("a", List.of(1, 3)),
+            new Pair<>("b", List.of(2, 5)),
+            new Pair<>("c", List.of(4)));
+    }
+
+    @Test
+    public void group_should_emit_oldest_group_when_lookahead_is_exceeded() {
+        var groups = new LabelGrouper<Integer>(2).group(items("a", 1, "b", 2, "c", 3, "a", 4, "c", 5)).toList();
+
+        assertThat(groups).containsExactly(
+            new Pair<>("a", List.of(1)),
+            new Pair<>("b", List.of(2)),
+            new Pair<>("c", List.of(3, 5)),
+            new Pair<>("a", List.of(4)));
+    }
+
+    @Test
+    public void group_should_return_empty_stream_for_empty_input() {
+        assertThat(new LabelGrouper<Integer>(1).group(Stream.empty())).isEmpty();
+    }
+
+    @Test
+    public void group_should_reject_lookahead_smaller_than_one() {
+        assertThatThrownBy(() -> new LabelGrouper<Integer>(0).group(Stream.empty()))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Lookahead must be at least 1, now it was 0");
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.action;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class LockTrackerTest {
+
+    @Test
+    public void objects_are_polled_by_one_thread_until_unlocked() throws Exception {
+        var checksA = new AtomicInteger();
+        var checksB = new AtomicInteger();
+        Set<String> pollingThreads = ConcurrentHashMap.newKeySet();
+        try (var tracker = new LockTracker(10, 10_000)) {
+            var a = tracker.track(() -> {
+                pollingThreads.add(Thread.currentThread().getName());
+                return checksA.incrementAndGet() < 3;
+            });
+            var b = tracker.track(() -> {
+                pollingThreads.add(Thread.currentThread().getName());
+                return checksB.incrementAndGet() < 5;
+            });
+            a.get();
+            b.get();
+        }
+
+        assertThat(checksA.get()).isEqualTo(3);
+        assertThat(checksB.get()).isEqualTo(5);
+        assertThat(pollingThreads).containsExactly("lock-tracker");
+    }
+
+    @Test
+    public void object_that_stays_locked_times_out() {
+        try (var tracker = new LockTracker(10, 50)) {
+            assertThatThrownBy(() -> tracker.track(() -> true).get())
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(TimeoutException.class)
+                .hasRootCauseMessage("Still locked after 50 ms");
+        }
+    }
+
+    @Test
+    public void failing_check_completes_the_future_exceptionally() {
+        try (var tracker = new LockTracker(10, 10_000)) {
+            assertThatThrownBy(() -> tracker.track(() -> {
+                throw new IllegalStateException("Dataset not found");
+            }).get())
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IllegalStateException.class)
+                .hasRootCauseMessage("Dataset not found");
+        }
+    }
+}
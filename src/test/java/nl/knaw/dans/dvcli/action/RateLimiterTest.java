@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.action;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class RateLimiterTest {
+
+    @Test
+    public void first_acquire_does_not_wait() throws Exception {
+        var limiter = new RateLimiter(10);
+        long start = System.nanoTime();
+        limiter.acquire(5);
+        assertThat(System.nanoTime() - start).isLessThan(100_000_000L);
+    }
+
+    @Test
+    public void later_acquires_wait_for_the_permits_of_earlier_ones() throws Exception {
+        var limiter = new RateLimiter(1000);
+        long start = System.nanoTime();
+        limiter.acquire(100);
+        limiter.acquire(100);
+        limiter.acquire(100);
+        // the third call waits for the 200 permits reserved before it
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(190_000_000L);
+    }
+
+    @Test
+    public void rate_must_be_positive() {
+        assertThatThrownBy(() -> new RateLimiter(0))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Rate must be positive, now it was 0.0");
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.action;
+
+import nl.knaw.dans.dvcli.AbstractTestWithTestDir;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class ResponseCacheTest extends AbstractTestWithTestDir {
+
+    @Test
+    public void entry_is_stored_and_read_back() {
+        var cache = new ResponseCache(testDir, 1024);
+        cache.put("a", new ResponseCache.Entry(42L, "application/json", "\"x\"", null, new byte[] { 1, 2, 3 }));
+
+        var entry = cache.get("a");
+        assertThat(entry.storedAt()).isEqualTo(42L);
+        assertThat(entry.contentType()).isEqualTo("application/json");
+        assertThat(entry.etag()).isEqualTo("\"x\"");
+        assertThat(entry.lastModified()).isNull();
+        assertThat(entry.body()).containsExactly(1, 2, 3);
+        assertThat(entry.hasValidators()).isTrue();
+        assertThat(cache.get("b")).isNull();
+    }
+
+    @Test
+    public void directory_and_entries_are_only_accessible_by_the_owner() throws Exception {
+        assumeTrue(testDir.getFileSystem().supportedFileAttributeViews().contains("posix"));
+        var directory = testDir.resolve("cache");
+        var cache = new ResponseCache(directory, 1024);
+        cache.put("a", entry());
+
+        assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(directory))).isEqualTo("rwx------");
+        assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(directory.resolve("a.response")))).isEqualTo("rw-------");
+    }
+
+    @Test
+    public void directory_that_others_can_read_is_not_used() throws Exception {
+        assumeTrue(testDir.getFileSystem().supportedFileAttributeViews().contains("posix"));
+        Files.createDirectories(testDir);
+        Files.setPosixFilePermissions(testDir, PosixFilePermissions.fromString("rwxr-xr-x"));
+        var cache = new ResponseCache(testDir, 1024);
+        cache.put("a", entry());
+
+        assertThat(cache.get("a")).isNull();
+        assertThat(testDir.resolve("a.response")).doesNotExist();
+    }
+
+    @Test
+    public void least_recently_used_entries_are_evicted_when_the_cache_is_full() throws Exception {
+        var cache = new ResponseCache(testDir, 2500);
+        cache.put("a", entry());
+        cache.put("b", entry());
+        // Make sure 'a' is older than 'b', then use 'a', so that 'b' is the least recently used
+        Files.setLastModifiedTime(testDir.resolve("a.response"), FileTime.fromMillis(1000));
+        Files.setLastModifiedTime(testDir.resolve("b.response"), FileTime.fromMillis(2000));
+        assertThat(cache.get("a")).isNotNull();
+
+        cache.put("c", entry());
+
+        assertThat(cache.get("a")).isNotNull();
+        assertThat(cache.get("b")).isNull();
+        assertThat(cache.get("c")).isNotNull();
+    }
+
+    @Test
+    public void keys_depend_on_scope_and_uri() {
+        assertThat(ResponseCache.key("key1", "http://localhost/api/dataverses/root"))
+            .isEqualTo(ResponseCache.key("key1", "http://localhost/api/dataverses/root"))
+            .isNotEqualTo(ResponseCache.key("key2", "http://localhost/api/dataverses/root"))
+            .isNotEqualTo(ResponseCache.key("key1", "http://localhost/api/dataverses/other"))
+            .doesNotContain("key1")
+            .hasSize(64);
+    }
+
+    private static ResponseCache.Entry entry() {
+        return new ResponseCache.Entry(0L, null, null, null, new byte[1000]);
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.action;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class RetentionEngineTest {
+    private static final Timestamp CUTOFF = Timestamp.valueOf("2024-01-01 00:00:00");
+
+    @Test
+    public void apply_deletes_old_rows_of_owner_in_chunks_after_the_kept_ones() throws Exception {
+        var db = Mockito.mock(Database.class);
+        var boundary = Timestamp.valueOf("2023-06-01 12:00:00");
+        doReturn(Stream.of(Arrays.asList(boundary, "abc"))).when(db).stream(anyString(), anyList(), any());
+        Mockito.when(db.query(anyString(), anyList())).thenReturn(List.of(List.of("2")), List.of(List.of("1")));
+
+        var result = RetentionEngine.builder()
+            .db(db)
+            .table("actionlogrecord")
+            .ownerColumn("useridentifier")
+            .orderColumn("starttime")
+            .keep(5)
+            .cutoff(CUTOFF)
+            .chunkSize(2)
+            .build()
+            .apply("@dataverseAdmin");
+
+        assertThat(result.deleted()).isEqualTo(3);
+        assertThat(result.chunks()).isEqualTo(2);
+        verify(db).stream(
+            eq("SELECT starttime, id FROM actionlogrecord WHERE useridentifier = ? ORDER BY starttime DESC, id DESC OFFSET ? LIMIT 1;"),
+            eq(List.of("@dataverseAdmin", 4)), any());
+        verify(db, times(2)).query(eq("""
+                WITH chunk AS (
+                SELECT id FROM actionlogrecord
+                WHERE useridentifier = ? AND starttime < ? AND (starttime, id) < (?, ?)
+                ORDER BY starttime, id LIMIT ?
+                ), deleted AS (
+                    DELETE FROM actionlogrecord n USING chunk c WHERE n.id = c.id RETURNING n.id
+                )
+                SELECT COUNT(*) FROM deleted;"""),
+            eq(List.of("@dataverseAdmin", CUTOFF, boundary, "abc", 2)));
+    }
+
+    @Test
+    public void apply_charges_the_rate_limiter_with_the_rows_actually_deleted() throws Exception {
+        var db = Mockito.mock(Database.class);
+        Mockito.when(db.query(anyString(), anyList())).thenReturn(List.of(List.of("2")), List.of(List.of("1")));
+        var rateLimiter = Mockito.mock(RateLimiter.class);
+
+        RetentionEngine.builder()
+            .db(db)
+            .table("actionlogrecord")
+            .orderColumn("starttime")
+            .cutoff(CUTOFF)
+            .chunkSize(2)
+            .rateLimiter(rateLimiter)
+            .build()
+            .apply(null);
+
+        verify(rateLimiter).acquire(2);
+        verify(rateLimiter).acquire(1);
+        Mockito.verifyNoMoreInteractions(rateLimiter);
+    }
+
+    @Test
+    public void explainChunk_explains_the_statement_that_apply_executes() throws Exception {
+        var db = Mockito.mock(Database.class);
+        doReturn(Stream.empty()).when(db).stream(anyString(), anyList(), any());
+        Mockito.when(db.query(anyString(), anyList())).thenReturn(List.of(List.of("Delete on usernotification"), List.of("  ->  Index Scan")));
+
+        var plan = RetentionEngine.builder()
+            .db(db)
+            .table("usernotification")
+            .ownerColumn("user_id")
+            .orderColumn("senddate")
+            .keep(10)
+            .chunkSize(100)
+            .build()
+            .explainChunk(7);
+
+        assertThat(plan).containsExactly("Delete on usernotification", "  ->  Index Scan");
+        verify(db).query(Mockito.startsWith("EXPLAIN WITH chunk AS (\nSELECT id FROM usernotification\nWHERE user_id = ? AND (senddate, id) < (?, ?)\n"),
+            eq(Arrays.asList(7, null, null, 100)));
+    }
+
+    @Test
+    public void apply_without_owner_column_applies_the_policy_to_the_whole_table() throws Exception {
+        var db = Mockito.mock(Database.class);
+        Mockito.when(db.query(anyString(), anyList())).thenReturn(List.of(List.of("0")));
+
+        var result = RetentionEngine.builder()
+            .db(db)
+            .table("actionlogrecord")
+            .orderColumn("starttime")
+            .cutoff(CUTOFF)
+            .build()
+            .apply(null);
+
+        assertThat(result.deleted()).isEqualTo(0);
+        verify(db).query(Mockito.contains("WHERE starttime < ?\nORDER BY starttime, id LIMIT ?"), eq(List.of(CUTOFF, 10000)));
+    }
+
+    @Test
+    public void findOwners_returns_owners_with_rows_to_delete() throws Exception {
+        var db = Mockito.mock(Database.class);
+        doReturn(Stream.of(1, 2)).when(db).stream(anyString(), anyList(), any());
+
+        var owners = RetentionEngine.builder()
+            .db(db)
+            .table("usernotification")
+            .ownerColumn("user_id")
+            .orderColumn("senddate")
+            .keep(20)
+            .cutoff(CUTOFF)
+            .build()
+            .findOwners();
+
+        assertThat(owners).containsExactly(1, 2);
+        verify(db).stream(eq("SELECT user_id FROM usernotification GROUP BY user_id HAVING COUNT(*) > ? AND MIN(senddate) < ?;"), eq(List.of(20, CUTOFF)), any());
+    }
+
+    @Test
+    public void invalid_table_name_is_rejected() {
+        var engine = RetentionEngine.builder()
+            .db(Mockito.mock(Database.class))
+            .table("usernotification; DROP TABLE dvobject")
+            .orderColumn("senddate")
+            .keep(1)
+            .build();
+
+        assertThatThrownBy(() -> engine.apply(null))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Invalid table or column name: usernotification; DROP TABLE dvobject");
+    }
+
+    @Test
+    public void policy_needs_keep_or_cutoff() {
+        var engine = RetentionEngine.builder()
+            .db(Mockito.mock(Database.class))
+            .table("actionlogrecord")
+            .orderColumn("starttime")
+            .build();
+
+        assertThatThrownBy(() -> engine.apply(null))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("A retention policy needs a number of rows to keep or a cutoff, or both");
+    }
+}
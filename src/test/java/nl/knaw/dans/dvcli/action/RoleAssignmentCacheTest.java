@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.action;
+
+import nl.knaw.dans.lib.dataverse.model.RoleAssignmentReadOnly;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class RoleAssignmentCacheTest {
+
+    @Test
+    public void assignments_are_listed_once_per_target_and_changes_are_kept() throws Exception {
+        var cache = new RoleAssignmentCache();
+        var listed = new ArrayList<String>();
+        var a = new RoleAssignmentReadOnly();
+        a.setId(1);
+        var b = new RoleAssignmentReadOnly();
+        b.setId(2);
+
+        for (int i = 0; i < 3; i++) {
+            cache.withAssignments("root", () -> {
+                listed.add("root");
+                return List.of(a, b);
+            }, assignments -> assignments.remove(a));
+        }
+        cache.withAssignments("other", () -> {
+            listed.add("other");
+            return List.of(a);
+        }, assignments -> null);
+
+        assertThat(listed).containsExactly("root", "other");
+        assertThat(cache.withAssignments("root", List::of, List::size)).isEqualTo(1);
+        assertThat(cache.withAssignments("other", List::of, List::size)).isEqualTo(1);
+    }
+
+    @Test
+    public void failed_listing_is_not_cached() throws Exception {
+        var cache = new RoleAssignmentCache();
+        var calls = new AtomicInteger();
+
+        assertThatThrownBy(() -> cache.withAssignments("root", () -> {
+            calls.incrementAndGet();
+            throw new IllegalStateException("server down");
+        }, List::size)).hasMessage("server down");
+        var size = cache.withAssignments("root", () -> {
+            calls.incrementAndGet();
+            return List.of(new RoleAssignmentReadOnly());
+        }, List::size);
+
+        assertThat(size).isEqualTo(1);
+        assertThat(calls.get()).isEqualTo(2);
+    }
+}
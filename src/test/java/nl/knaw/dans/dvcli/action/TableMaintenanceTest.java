@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.action;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+
+public class TableMaintenanceTest {
+
+    @Test
+    public void vacuumAnalyze_reports_statistics_before_and_after() throws Exception {
+        var db = Mockito.mock(Database.class);
+        Mockito.when(db.query(anyString(), eq(List.of("usernotification")))).thenReturn(
+            List.of(List.of("2097152", "1048576", "1000", "5000")),
+            List.of(List.of("2097152", "1048576", "1000", "0")));
+
+        var report = new TableMaintenance(db).vacuumAnalyze("usernotification");
+
+        verify(db).update("VACUUM (ANALYZE) usernotification");
+        assertThat(report)
+            .startsWith("VACUUM (ANALYZE) usernotification took ")
+            .contains("table size:  2 MB -> 2 MB")
+            .contains("index size:  1 MB -> 1 MB")
+            .contains("live tuples: 1000 -> 1000")
+            .endsWith("dead tuples: 5000 -> 0");
+    }
+}
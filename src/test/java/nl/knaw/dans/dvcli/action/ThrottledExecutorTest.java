@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.action;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ThrottledExecutorTest {
+
+    @Test
+    public void tasks_run_in_the_calling_thread_with_parallelism_1() {
+        var threads = new ArrayList<Thread>();
+        try (var executor = new ThrottledExecutor(1, 0)) {
+            executor.execute(() -> threads.add(Thread.currentThread()));
+            executor.execute(() -> threads.add(Thread.currentThread()));
+        }
+        assertThat(threads).containsExactly(Thread.currentThread(), Thread.currentThread());
+    }
+
+    @Test
+    public void no_more_than_parallelism_tasks_run_at_the_same_time() {
+        var running = new AtomicInteger();
+        var maxRunning = new AtomicInteger();
+        var finished = new AtomicInteger();
+        try (var executor = new ThrottledExecutor(2, 0)) {
+            for (int i = 0; i < 8; i++) {
+                executor.execute(() -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(20);
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    running.decrementAndGet();
+                    finished.incrementAndGet();
+                });
+            }
+        }
+        // Closing waits for the tasks
+        assertThat(finished.get()).isEqualTo(8);
+        assertThat(maxRunning.get()).isBetween(1, 2);
+    }
+
+    @Test
+    public void delay_is_applied_between_the_starts_of_tasks() {
+        long start = System.nanoTime();
+        try (var executor = new ThrottledExecutor(3, 50)) {
+            for (int i = 0; i < 3; i++) {
+                executor.execute(() -> {
+                });
+            }
+        }
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(100_000_000L);
+    }
+}
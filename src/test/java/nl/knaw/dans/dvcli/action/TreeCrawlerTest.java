@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.action;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TreeCrawlerTest {
+    // 'd' is reachable from both 'b' and 'c', and 'e' points back to 'root'
+    private static final Map<String, List<String>> TREE = Map.of(
+        "root", List.of("a", "b", "c"),
+        "a", List.of(),
+        "b", List.of("d", "e"),
+        "c", List.of("d"),
+        "d", List.of(),
+        "e", List.of("root"));
+
+    private static class CollectingReport implements Report<String, String> {
+        final List<String> succeeded = Collections.synchronizedList(new ArrayList<>());
+        final List<String> failed = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void reportSuccess(String label, String node, String result) {
+            succeeded.add(label);
+        }
+
+        @Override
+        public void reportFailure(String label, String node, Exception e) {
+            failed.add(label + ": " + e.getMessage());
+        }
+    }
+
+    private static TreeCrawler.Visit<String> visit(String node) {
+        if (!TREE.containsKey(node)) {
+            throw new IllegalArgumentException("Not found");
+        }
+        return new TreeCrawler.Visit<>(node, TREE.get(node).stream().map(child -> new Pair<>(child, child)).toList());
+    }
+
+    @Test
+    public void every_node_is_visited_once() {
+        var report = new CollectingReport();
+        int visited = TreeCrawler.<String> builder()
+            .visitor(TreeCrawlerTest::visit)
+            .report(report)
+            .parallelism(3)
+            .build()
+            .crawl(List.of(new Pair<>("root", "root")));
+
+        assertThat(visited).isEqualTo(6);
+        assertThat(report.succeeded)
+            .hasSize(6)
+            .contains("root", "root/a", "root/b", "root/c", "root/b/e")
+            .containsAnyOf("root/b/d", "root/c/d");
+    }
+
+    @Test
+    public void depth_is_limited() {
+        var report = new CollectingReport();
+        TreeCrawler.<String> builder()
+            .visitor(TreeCrawlerTest::visit)
+            .report(report)
+            .maxDepth(1)
+            .build()
+            .crawl(List.of(new Pair<>("root", "root")));
+
+        assertThat(report.succeeded).containsExactly("root", "root/a", "root/b", "root/c");
+    }
+
+    @Test
+    public void root_that_is_also_a_descendant_of_another_root_is_visited_once() {
+        var report = new CollectingReport();
+        int visited = TreeCrawler.<String> builder()
+            .visitor(TreeCrawlerTest::visit)
+            .rootKey(node -> node)
+            .report(report)
+            .parallelism(2)
+            .build()
+            .crawl(List.of(new Pair<>("top", "root"), new Pair<>("bee", "b")));
+
+        assertThat(visited).isEqualTo(6);
+        assertThat(report.succeeded)
+            .hasSize(6)
+            .contains("top", "bee", "top/a", "top/c", "bee/e")
+            .doesNotContain("top/b");
+    }
+
+    @Test
+    public void root_whose_key_cannot_be_determined_is_reported_as_failed() {
+        var report = new CollectingReport();
+        TreeCrawler.<String> builder()
+            .visitor(TreeCrawlerTest::visit)
+            .rootKey(node -> {
+                throw new IllegalArgumentException("Not found");
+            })
+            .report(report)
+            .build()
+            .crawl(List.of(new Pair<>("missing", "missing")));
+
+        assertThat(report.succeeded).isEmpty();
+        assertThat(report.failed).containsExactly("missing: Not found");
+    }
+
+    @Test
+    public void full_frontier_does_not_block_the_crawl() {
+        var report = new CollectingReport();
+        int visited = TreeCrawler.<String> builder()
+            .visitor(TreeCrawlerTest::visit)
+            .report(report)
+            .parallelism(2)
+            .maxFrontierSize(1)
+            .build()
+            .crawl(List.of(new Pair<>("root", "root"), new Pair<>("missing", "missing")));
+
+        assertThat(visited).isEqualTo(7);
+        assertThat(report.succeeded).hasSize(6);
+        assertThat(report.failed).containsExactly("missing: Not found");
+    }
+
+    @Test
+    public void deep_tree_with_full_frontier_does_not_overflow_the_stack() throws Exception {
+        // Node i has a leaf and node i + 1 as children; the leaf fills the frontier, so every next node is visited by the thread that found it
+        int depth = 2000;
+        ThrowingFunction<String, TreeCrawler.Visit<String>, Exception> visitor = node -> {
+            if (node.startsWith("leaf") || Integer.parseInt(node) == depth) {
+                return new TreeCrawler.Visit<>(node, List.of());
+            }
+            var next = Integer.toString(Integer.parseInt(node) + 1);
+            return new TreeCrawler.Visit<>(node, List.of(new Pair<>("leaf" + node, "leaf" + node), new Pair<>(next, next)));
+        };
+        var failed = new AtomicInteger();
+        var visited = new AtomicInteger();
+        // A small stack, so that visiting the nodes by recursion would overflow it
+        var thread = new Thread(null, () -> visited.set(TreeCrawler.<String> builder()
+            .visitor(visitor)
+            .report(new Report<>() {
+                @Override
+                public void reportSuccess(String label, String node, String result) {
+                }
+
+                @Override
+                public void reportFailure(String label, String node, Exception e) {
+                    failed.incrementAndGet();
+                }
+            })
+            .maxFrontierSize(1)
+            .build()
+            .crawl(List.of(new Pair<>("0", "0")))), "crawler", 128 * 1024);
+        var uncaught = new AtomicReference<Throwable>();
+        thread.setUncaughtExceptionHandler((t, e) -> uncaught.set(e));
+        thread.start();
+        thread.join();
+
+        assertThat(uncaught.get()).isNull();
+        assertThat(visited.get()).isEqualTo(2 * depth + 1);
+        assertThat(failed.get()).isZero();
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.command;
+
+import nl.knaw.dans.dvcli.AbstractTestWithTestDir;
+import nl.knaw.dans.dvcli.command.collection.CollectionCmd;
+import nl.knaw.dans.dvcli.command.collection.CollectionCreateDatasets;
+import nl.knaw.dans.lib.dataverse.DataverseApi;
+import nl.knaw.dans.lib.dataverse.DataverseClient;
+import nl.knaw.dans.lib.dataverse.DataverseHttpResponse;
+import nl.knaw.dans.lib.dataverse.model.dataset.DatasetCreationResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import picocli.CommandLine;
+
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class CollectionCreateDatasetsTest extends AbstractTestWithTestDir {
+    private DataverseClient client;
+    private DataverseApi api;
+
+    @BeforeEach
+    public void setUpClient() throws Exception {
+        @SuppressWarnings("unchecked")
+        DataverseHttpResponse<DatasetCreationResult> response = Mockito.mock(DataverseHttpResponse.class);
+        Mockito.when(response.getEnvelopeAsString()).thenReturn("created");
+        client = Mockito.mock(DataverseClient.class);
+        api = Mockito.mock(DataverseApi.class);
+        Mockito.when(client.dataverse(anyString())).thenReturn(api);
+        Mockito.when(api.createDataset(anyString(), anyMap())).thenReturn(response);
+        Files.createDirectories(testDir);
+    }
+
+    @Test
+    public void json_lines_are_created_in_their_collection_and_resumed() throws Exception {
+        var jsonLines = testDir.resolve("datasets.jsonl");
+        Files.write(jsonLines, List.of(
+            "{\"collection\":\"a\",\"dataset\":{\"title\":\"1\"}}",
+            "",
+            "{\"dataset\":{\"title\":\"3\"}}",
+            "{\"collection\":\"b\"}"));
+        var resumeFile = testDir.resolve("done.txt");
+
+        var exitCode = commandLine().execute("-d", "0", "root", "create-datasets", "--jsonl", jsonLines.toString(), "--resume-file", resumeFile.toString());
+        assertThat(exitCode).isEqualTo(0);
+        assertThat(Files.readAllLines(resumeFile)).containsExactly(jsonLines + ":1", jsonLines + ":3");
+        verify(client).dataverse("a");
+        verify(api).createDataset(eq("{\"title\":\"1\"}"), anyMap());
+        verify(api).createDataset(eq("{\"title\":\"3\"}"), anyMap());
+
+        // The second run only retries the line that failed
+        commandLine().execute("-d", "0", "root", "create-datasets", "--jsonl", jsonLines.toString(), "--resume-file", resumeFile.toString());
+        verify(api, times(2)).createDataset(anyString(), anyMap());
+        assertThat(Files.readAllLines(resumeFile)).hasSize(2);
+    }
+
+    @Test
+    public void files_matching_the_glob_are_created_in_the_target_collection() throws Exception {
+        var dir = Files.createDirectories(testDir.resolve("input"));
+        Files.writeString(dir.resolve("b.json"), "{\"title\":\"b\"}");
+        Files.writeString(dir.resolve("a.json"), "{\"title\":\"a\"}");
+        Files.writeString(dir.resolve("notes.txt"), "not a dataset");
+
+        var exitCode = commandLine().execute("-d", "0", "target", "create-datasets", "--files", dir.resolve("*.json").toString());
+
+        assertThat(exitCode).isEqualTo(0);
+        var inOrder = Mockito.inOrder(api);
+        inOrder.verify(api).createDataset(eq("{\"title\":\"a\"}"), anyMap());
+        inOrder.verify(api).createDataset(eq("{\"title\":\"b\"}"), anyMap());
+        verify(api, times(2)).createDataset(anyString(), any());
+    }
+
+    @Test
+    public void directory_means_all_json_files_in_it() throws Exception {
+        var dir = Files.createDirectories(testDir.resolve("input"));
+        Files.writeString(dir.resolve("1.json"), "{\"title\":\"1\"}");
+        Files.writeString(dir.resolve("notes.txt"), "not a dataset");
+        Files.createDirectories(dir.resolve("sub.json"));
+
+        var exitCode = commandLine().execute("-d", "0", "target", "create-datasets", "--files", dir.toString());
+
+        assertThat(exitCode).isEqualTo(0);
+        verify(api).createDataset(eq("{\"title\":\"1\"}"), anyMap());
+        verify(api, times(1)).createDataset(anyString(), any());
+    }
+
+    private CommandLine commandLine() {
+        return new CommandLine(new CollectionCmd(client))
+            .addSubcommand(new CollectionCreateDatasets());
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.command;
+
+import nl.knaw.dans.dvcli.AbstractCapturingTest;
+import nl.knaw.dans.dvcli.command.dataset.DatasetCmd;
+import nl.knaw.dans.dvcli.command.dataset.DatasetPublish;
+import nl.knaw.dans.lib.dataverse.DatasetApi;
+import nl.knaw.dans.lib.dataverse.DataverseClient;
+import nl.knaw.dans.lib.dataverse.DataverseHttpResponse;
+import nl.knaw.dans.lib.dataverse.model.dataset.UpdateType;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import picocli.CommandLine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.verify;
+
+public class DatasetPublishTest extends AbstractCapturingTest {
+
+    @Test
+    public void publish_without_options_uses_the_defaults() throws Exception {
+        var client = Mockito.mock(DataverseClient.class);
+        var dataset = Mockito.mock(DatasetApi.class);
+        var response = Mockito.mock(DataverseHttpResponse.class);
+        Mockito.when(client.dataset(anyString())).thenReturn(dataset);
+        doReturn(response).when(dataset).publish(UpdateType.minor, false);
+        doReturn("published").when(response).getEnvelopeAsString();
+
+        var exitCode = new CommandLine(new DatasetCmd(client))
+            .addSubcommand(new DatasetPublish())
+            .execute("doi:10.5072/dans-2a3-4b5", "publish");
+
+        assertThat(exitCode).isEqualTo(0);
+        verify(dataset).publish(UpdateType.minor, false);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.command;
+
+import nl.knaw.dans.dvcli.AbstractTestWithTestDir;
+import nl.knaw.dans.dvcli.action.Database;
+import nl.knaw.dans.dvcli.command.db.DbCmd;
+import nl.knaw.dans.dvcli.command.db.DbExport;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import picocli.CommandLine;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class DbExportTest extends AbstractTestWithTestDir {
+
+    @Test
+    public void export_of_table_to_gz_file_is_compressed() throws Exception {
+        var database = Mockito.mock(Database.class);
+        Mockito.when(database.copyOut(eq("SELECT * FROM usernotification"), eq(true), any())).thenAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(2);
+            out.write("id,user_id\n1,2\n".getBytes(StandardCharsets.UTF_8));
+            return 1L;
+        });
+        Files.createDirectories(testDir);
+        var file = testDir.resolve("notifications.csv.gz");
+
+        var exitCode = commandLine(database).execute("export", "--table", "usernotification", "--output", file.toString());
+
+        assertThat(exitCode).isEqualTo(0);
+        try (var in = new GZIPInputStream(Files.newInputStream(file))) {
+            assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("id,user_id\n1,2\n");
+        }
+        verify(database).connect();
+        verify(database).close();
+    }
+
+    @Test
+    public void export_rejects_invalid_table_name() throws Exception {
+        var database = Mockito.mock(Database.class);
+        var cmd = commandLine(database);
+        cmd.setExecutionExceptionHandler((e, commandLine, parseResult) -> {
+            throw e;
+        });
+
+        assertThatThrownBy(() -> cmd.execute("export", "--table", "usernotification; DROP TABLE dvobject"))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Invalid table name: usernotification; DROP TABLE dvobject");
+        verify(database, never()).copyOut(any(), anyBoolean(), any());
+    }
+
+    private static CommandLine commandLine(Database database) {
+        return new CommandLine(new DbCmd(database))
+            .addSubcommand(new DbExport());
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.command;
+
+import nl.knaw.dans.dvcli.action.Database;
+import nl.knaw.dans.dvcli.command.db.DbCmd;
+import nl.knaw.dans.dvcli.command.db.DbRetention;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import picocli.CommandLine;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class DbRetentionTest {
+
+    @Test
+    public void zero_age_is_rejected() throws Exception {
+        assertRejected("Age must be positive, now it was PT0S.", "--older-than", "0s");
+    }
+
+    @Test
+    public void zero_parallel_is_rejected() throws Exception {
+        assertRejected("Number of parallel truncations must be at least 1, now it was 0.", "--keep", "10", "--parallel", "0");
+    }
+
+    @Test
+    public void negative_max_rows_per_second_is_rejected() throws Exception {
+        assertRejected("Maximum rows per second must not be negative, now it was -1.", "--keep", "10", "--max-rows-per-second", "-1");
+    }
+
+    @Test
+    public void zero_chunk_size_is_rejected() throws Exception {
+        assertRejected("Chunk size must be at least 1, now it was 0.", "--keep", "10", "--chunk-size", "0");
+    }
+
+    private static void assertRejected(String message, String... options) throws Exception {
+        var database = Mockito.mock(Database.class);
+        var cmd = new CommandLine(new DbCmd(database))
+            .addSubcommand(new DbRetention());
+        cmd.setExecutionExceptionHandler((e, commandLine, parseResult) -> {
+            throw e;
+        });
+        var args = new String[options.length + 5];
+        System.arraycopy(new String[] { "retention", "--table", "actionlogrecord", "--order-column", "starttime" }, 0, args, 0, 5);
+        System.arraycopy(options, 0, args, 5, options.length);
+
+        assertThatThrownBy(() -> cmd.execute(args))
+            .hasMessage(message);
+        verify(database, never()).connect();
+    }
+}
@@ -18,22 +18,36 @@ package nl.knaw.dans.dvcli.command;
 import nl.knaw.dans.dvcli.AbstractCapturingTest;
 import nl.knaw.dans.dvcli.action.Database;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 
 
 public class TruncateNotificationsTest extends AbstractCapturingTest {
+    private static final String EXCESS_TABLE = "dvcli_excess_notification_[0-9a-f]{32}";
 
     @Test
     public void doCall_with_wrong_database_connection_fails() throws Exception {
@@ -74,13 +88,8 @@ public class TruncateNotificationsTest extends AbstractCapturingTest {
         Mockito.doNothing().when(database).connect();
         Mockito.doNothing().when(database).close();
         
-        var fakeQueryOutput = List.of(
-                List.of("1", "user1-dontcare"),
-                List.of("2", "user2-dontcare"),
-                List.of("3", "user3-dontcare")
-        );
-        Mockito.when(database.query(anyString())).thenReturn( fakeQueryOutput );
-        Mockito.when(database.update(anyString())).thenReturn( 3,2,1);
+        doReturn(Stream.of(1, 2, 3)).when(database).stream(anyString(), anyList(), any());
+        Mockito.when(database.update(anyString(), anyList())).thenReturn( 3,2,1);
         
         var userOptions = new TruncateNotifications.UserOptions();
         userOptions.user = 0;
@@ -107,12 +116,390 @@ public class TruncateNotificationsTest extends AbstractCapturingTest {
             """);
         
         verify(database, times(1)).connect();
-        verify(database, times(1)).query(any());
-        verify(database, times(3)).update(any());
+        verify(database, times(1)).stream(any(), eq(List.of(1)), any());
+        verify(database, times(1)).update(any(), eq(List.of(1, 1, 1)));
+        verify(database, times(1)).update(any(), eq(List.of(2, 2, 1)));
+        verify(database, times(1)).update(any(), eq(List.of(3, 3, 1)));
         verify(database, times(1)).close();
         verifyNoMoreInteractions(database);
     }
     
+    @Test
+    public void doCall_with_batch_size_sends_the_deletes_of_several_users_together() throws Exception {
+        var database = Mockito.mock(Database.class);
+
+        doReturn(Stream.of(1, 2, 3)).when(database).stream(anyString(), anyList(), any());
+        Mockito.when(database.executeBatch(anyString(), anyList(), anyInt())).thenReturn(new int[] { 3, 2 }, new int[] { 1 });
+
+        var userOptions = new TruncateNotifications.UserOptions();
+        userOptions.allUsers = true;
+
+        var cmd = getCmd(database, 1, userOptions);
+        setField(cmd, "batchSize", 2);
+        cmd.doCall();
+
+        assertThat(stderr.toString()).isEqualTo("1..2: OK. 3: OK. ");
+        assertThat(stdout.toString()).contains("""
+            Deleted 3 record(s) for user with id 1
+            Deleted 2 record(s) for user with id 2
+            """, """
+            Deleted 1 record(s) for user with id 3
+            """);
+
+        verify(database, times(1)).connect();
+        verify(database, times(1)).stream(any(), eq(List.of(1)), any());
+        verify(database, times(1)).executeBatch(any(), eq(List.of(List.of(1, 1, 1), List.of(2, 2, 1))), eq(2));
+        verify(database, times(1)).executeBatch(any(), eq(List.of(List.of(3, 3, 1))), eq(1));
+        verify(database, times(1)).close();
+        verifyNoMoreInteractions(database);
+    }
+
+    @Test
+    public void doCall_set_based_ranks_once_and_deletes_the_excess_in_chunks() throws Exception {
+        var database = Mockito.mock(Database.class);
+        Mockito.when(database.query(Mockito.startsWith("SELECT COALESCE(MAX(seq)"), anyList())).thenReturn(List.of(List.of("6")));
+        Mockito.when(database.query(Mockito.startsWith("WITH deleted"), anyList())).thenReturn(
+            List.of(List.of("1", "3"), List.of("2", "2")),
+            List.of(List.of("2", "1")));
+
+        var userOptions = new TruncateNotifications.UserOptions();
+        userOptions.allUsers = true;
+
+        var cmd = getCmd(database, 1, userOptions);
+        setField(cmd, "setBased", true);
+        setField(cmd, "chunkSize", 5);
+        cmd.doCall();
+
+        assertThat(stderr.toString()).isEqualTo("1: OK. 2: OK. ");
+        assertThat(stdout.toString()).isEqualTo("""
+            INFO  Found 6 notification(s) to delete
+            INFO  Deleted 5 record(s) in chunk 1
+            DEBUG Sleeping for 10 ms
+            INFO  Deleted 1 record(s) in chunk 2
+            Deleted 3 record(s) for user with id 1
+            Deleted 3 record(s) for user with id 2
+            INFO  Deleted 6 record(s) for 2 user(s)
+            """);
+
+        verify(database, times(1)).connect();
+        verify(database, times(1)).update(Mockito.matches("CREATE UNLOGGED TABLE " + EXCESS_TABLE + " AS\n(?s).*ROW_NUMBER\\(\\) OVER \\(PARTITION BY user_id ORDER BY senddate DESC, "
+            + "id DESC\\) AS rank\n    FROM usernotification\n    \n\\) ranked\nWHERE rank > 1;"));
+        verify(database, times(1)).update(Mockito.matches("ALTER TABLE " + EXCESS_TABLE + " ADD PRIMARY KEY \\(seq\\);"));
+        verify(database, times(1)).query(Mockito.matches("SELECT COALESCE\\(MAX\\(seq\\), 0\\) FROM " + EXCESS_TABLE + ";"), eq(List.of()));
+        verify(database, times(1)).query(Mockito.matches("(?s)WITH deleted.*USING " + EXCESS_TABLE + " e\n.*"), eq(List.of(0L, 5L)));
+        verify(database, times(1)).query(Mockito.matches("(?s)WITH deleted.*USING " + EXCESS_TABLE + " e\n.*"), eq(List.of(5L, 6L)));
+        verify(database, times(1)).update(Mockito.matches("DROP TABLE IF EXISTS " + EXCESS_TABLE + ";"));
+        verify(database, times(1)).close();
+        verifyNoMoreInteractions(database);
+    }
+
+    @Test
+    public void doCall_set_based_drops_the_work_table_when_deleting_fails() throws Exception {
+        var database = Mockito.mock(Database.class);
+        Mockito.when(database.query(Mockito.startsWith("SELECT COALESCE(MAX(seq)"), anyList())).thenReturn(List.of(List.of("6")));
+        Mockito.when(database.query(Mockito.startsWith("WITH deleted"), anyList())).thenThrow(new SQLException("deadlock detected"));
+
+        var userOptions = new TruncateNotifications.UserOptions();
+        userOptions.user = 7;
+
+        var cmd = getCmd(database, 1, userOptions);
+        setField(cmd, "setBased", true);
+
+        assertThatThrownBy(cmd::doCall)
+            .hasMessage("Error deleting notifications in chunk 1")
+            .hasRootCauseMessage("deadlock detected");
+        verify(database, times(1)).update(Mockito.contains("FROM usernotification\n    WHERE user_id = 7\n) ranked\nWHERE rank > 1;"));
+        verify(database, times(1)).update(Mockito.matches("DROP TABLE IF EXISTS " + EXCESS_TABLE + ";"));
+    }
+
+    @Test
+    public void doCall_set_based_runs_use_work_tables_of_their_own() throws Exception {
+        var database = Mockito.mock(Database.class);
+        Mockito.when(database.query(Mockito.startsWith("SELECT COALESCE(MAX(seq)"), anyList())).thenReturn(List.of(List.of("0")));
+
+        var userOptions = new TruncateNotifications.UserOptions();
+        userOptions.allUsers = true;
+
+        for (int run = 0; run < 2; run++) {
+            var cmd = getCmd(database, 1, userOptions);
+            setField(cmd, "setBased", true);
+            cmd.doCall();
+        }
+
+        var statements = ArgumentCaptor.forClass(String.class);
+        verify(database, times(6)).update(statements.capture());
+        var drops = statements.getAllValues().stream()
+            .filter(sql -> sql.startsWith("DROP TABLE"))
+            .toList();
+        assertThat(drops).hasSize(2).doesNotHaveDuplicates();
+    }
+
+    @Test
+    public void doCall_chunked_deletes_older_notifications_in_chunks_from_old_to_new() throws Exception {
+        var database = Mockito.mock(Database.class);
+        var senddate = Timestamp.valueOf("2024-01-01 00:00:00");
+        doReturn(Stream.of(Arrays.asList(senddate, 500L))).when(database).stream(anyString(), anyList(), any());
+        Mockito.when(database.query(anyString(), anyList())).thenReturn(
+            List.of(List.of("2")),
+            List.of(List.of("1")));
+
+        var userOptions = new TruncateNotifications.UserOptions();
+        userOptions.user = 7;
+
+        var cmd = getCmd(database, 3, userOptions);
+        setField(cmd, "chunked", true);
+        setField(cmd, "chunkSize", 2);
+        cmd.doCall();
+
+        assertThat(stderr.toString()).isEqualTo("7: OK. ");
+        assertThat(stdout.toString()).contains("Deleted 3 record(s) for user with id 7");
+
+        verify(database, times(1)).connect();
+        verify(database, times(1)).stream(anyString(), eq(List.of(7, 2)), any());
+        verify(database, times(2)).query(Mockito.contains("WHERE user_id = ? AND (senddate, id) < (?, ?)\nORDER BY senddate, id LIMIT ?"), eq(List.of(7, senddate, 500L, 2)));
+        verify(database, times(1)).close();
+        verifyNoMoreInteractions(database);
+    }
+
+    @Test
+    public void doCall_dry_run_reports_counts_and_plan_without_deleting() throws Exception {
+        var database = Mockito.mock(Database.class);
+        doReturn(Stream.of(
+            new TruncateNotifications.DeletableCount(5, 30L),
+            new TruncateNotifications.DeletableCount(2, 20L),
+            new TruncateNotifications.DeletableCount(9, 1L)
+        )).when(database).stream(anyString(), anyList(), any());
+        Mockito.when(database.query(anyString(), anyList())).thenReturn(List.of(List.of("Delete on usernotification"), List.of("  ->  Index Scan")));
+
+        var userOptions = new TruncateNotifications.UserOptions();
+        userOptions.allUsers = true;
+
+        var cmd = getCmd(database, 10, userOptions);
+        setField(cmd, "dryRun", true);
+        setField(cmd, "top", 2);
+        cmd.doCall();
+
+        assertThat(stdout.toString()).isEqualTo("""
+            Dry run: no notifications are deleted
+            Users with notifications to delete: 3
+            Notifications to delete: 51
+            Top 2 user(s):
+              user 5: 30
+              user 2: 20
+            Plan of the delete statement:
+              Delete on usernotification
+                ->  Index Scan
+            Estimated runtime, not counting the statements themselves (lower bound): PT0.02S
+            """);
+
+        verify(database, times(1)).connect();
+        verify(database, times(1)).stream(Mockito.contains("GROUP BY user_id"), eq(List.of(10, 10)), any());
+        verify(database, times(1)).query(Mockito.startsWith("EXPLAIN DELETE"), eq(List.of(5, 5, 10)));
+        verify(database, times(1)).close();
+        verifyNoMoreInteractions(database);
+    }
+
+    @Test
+    public void doCall_dry_run_estimates_the_runtime_at_the_configured_rate() throws Exception {
+        var database = Mockito.mock(Database.class);
+        doReturn(Stream.of(
+            new TruncateNotifications.DeletableCount(5, 30_000L),
+            new TruncateNotifications.DeletableCount(2, 20_000L)
+        )).when(database).stream(anyString(), anyList(), any());
+        Mockito.when(database.query(anyString(), anyList())).thenReturn(List.of(List.of("Seq Scan on usernotification")));
+
+        var userOptions = new TruncateNotifications.UserOptions();
+        userOptions.allUsers = true;
+
+        var cmd = getCmd(database, 10, userOptions);
+        setField(cmd, "dryRun", true);
+        setField(cmd, "setBased", true);
+        setField(cmd, "maxRowsPerSecond", 100);
+        cmd.doCall();
+
+        assertThat(stdout.toString()).endsWith("Estimated runtime, not counting the statements themselves (lower bound): PT8M20S\n");
+    }
+
+    @Test
+    public void doCall_older_than_deletes_old_notifications_in_chunks_and_warns_about_missing_index() throws Exception {
+        var database = Mockito.mock(Database.class);
+        Mockito.when(database.query(Mockito.startsWith("SELECT indexdef"), anyList())).thenReturn(List.of());
+        Mockito.when(database.query(Mockito.startsWith("EXPLAIN"), anyList())).thenReturn(List.of(List.of("Delete on usernotification"), List.of("  ->  Seq Scan on usernotification")));
+        Mockito.when(database.query(Mockito.startsWith("WITH chunk"), anyList())).thenReturn(List.of(List.of("2")), List.of(List.of("0")));
+
+        var userOptions = new TruncateNotifications.UserOptions();
+        userOptions.user = 7;
+
+        var cmd = getCmd(database, 0, userOptions);
+        setField(cmd, "olderThan", new DurationConverter().convert("180d"));
+        setField(cmd, "chunkSize", 2);
+        cmd.doCall();
+
+        assertThat(stderr.toString()).isEqualTo("7: OK. ");
+        assertThat(stdout.toString())
+            .contains("WARN  No index on usernotification (user_id, senddate) found")
+            .contains("WARN  The plan of the age-based delete uses a sequential scan")
+            .contains("Deleted 2 record(s) for user with id 7");
+        verify(database, times(2)).query(Mockito.startsWith("WITH chunk"), anyList());
+    }
+
+    @Test
+    public void doCall_set_based_with_partitions_truncates_each_partition() throws Exception {
+        var database = Mockito.mock(Database.class);
+        Mockito.when(database.query(Mockito.startsWith("SELECT COALESCE(MAX(seq)"), anyList())).thenReturn(List.of(List.of("13")));
+        Mockito.when(database.query(anyString(), eq(List.of(0L, 6L)))).thenReturn(List.of(List.of("4", "6")));
+        Mockito.when(database.query(anyString(), eq(List.of(6L, 13L)))).thenReturn(List.of(List.of("3", "5"), List.of("4", "1"), List.of("5", "1")));
+
+        var userOptions = new TruncateNotifications.UserOptions();
+        userOptions.allUsers = true;
+
+        var cmd = getCmd(database, 1, userOptions);
+        setField(cmd, "setBased", true);
+        setField(cmd, "partitions", 2);
+        setField(cmd, "chunkSize", 100);
+        cmd.doCall();
+
+        assertThat(stderr.toString()).isEqualTo("3: OK. 4: OK. 5: OK. ");
+        assertThat(stdout.toString())
+            .contains("INFO  Deleted 6 record(s) in chunk 1 of partition 0")
+            .contains("INFO  Deleted 7 record(s) in chunk 1 of partition 1")
+            .contains("Deleted 7 record(s) for user with id 4")
+            .endsWith("INFO  Deleted 13 record(s) for 3 user(s)\n");
+        verify(database, times(2)).query(Mockito.startsWith("WITH deleted"), anyList());
+    }
+
+    @Test
+    public void doCall_set_based_charges_the_rate_limit_with_the_rows_actually_deleted() throws Exception {
+        var database = Mockito.mock(Database.class);
+        Mockito.when(database.query(Mockito.startsWith("SELECT COALESCE(MAX(seq)"), anyList())).thenReturn(List.of(List.of("3")));
+        // The rows were deleted by someone else in the meantime
+        Mockito.when(database.query(Mockito.startsWith("WITH deleted"), anyList())).thenReturn(List.of(), List.of(List.of("7", "1")));
+
+        var userOptions = new TruncateNotifications.UserOptions();
+        userOptions.user = 7;
+
+        var cmd = getCmd(database, 1, userOptions);
+        setField(cmd, "setBased", true);
+        setField(cmd, "chunkSize", 2);
+        setField(cmd, "chunkDelay", 0L);
+        setField(cmd, "maxRowsPerSecond", 1);
+        long start = System.nanoTime();
+        cmd.doCall();
+
+        // A full chunk would have been charged 2 seconds
+        assertThat(System.nanoTime() - start).isLessThan(1_000_000_000L);
+        assertThat(stdout.toString())
+            .contains("INFO  Deleted 0 record(s) in chunk 1")
+            .contains("INFO  Deleted 1 record(s) in chunk 2");
+    }
+
+    @Test
+    public void doCall_chunked_applies_the_rate_limit() throws Exception {
+        var database = Mockito.mock(Database.class);
+        Mockito.when(database.query(anyString(), anyList())).thenReturn(List.of(List.of("2")), List.of(List.of("2")), List.of(List.of("0")));
+
+        var userOptions = new TruncateNotifications.UserOptions();
+        userOptions.user = 7;
+
+        var cmd = getCmd(database, 0, userOptions);
+        setField(cmd, "chunked", true);
+        setField(cmd, "chunkSize", 2);
+        setField(cmd, "chunkDelay", 0L);
+        setField(cmd, "maxRowsPerSecond", 10);
+        long start = System.nanoTime();
+        cmd.doCall();
+
+        // The second and third chunk wait for the 2 rows of the chunk before them
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(390_000_000L);
+        assertThat(stdout.toString()).contains("Deleted 4 record(s) for user with id 7");
+    }
+
+    @Test
+    public void doCall_with_max_rows_per_second_requires_a_chunked_mode() throws Exception {
+        var userOptions = new TruncateNotifications.UserOptions();
+        userOptions.allUsers = true;
+
+        var cmd = getCmd(Mockito.mock(Database.class), 1, userOptions);
+        setField(cmd, "maxRowsPerSecond", 100);
+
+        assertThatThrownBy(cmd::doCall)
+            .hasMessage("Option --max-rows-per-second requires --set-based, --chunked or --older-than.");
+    }
+
+    @Test
+    public void doCall_with_partitions_requires_set_based() throws Exception {
+        var userOptions = new TruncateNotifications.UserOptions();
+        userOptions.allUsers = true;
+
+        var cmd = getCmd(Mockito.mock(Database.class), 1, userOptions);
+        setField(cmd, "partitions", 2);
+
+        assertThatThrownBy(cmd::doCall)
+            .hasMessage("Option --partitions requires --set-based.");
+    }
+
+    @Test
+    public void doCall_with_archive_writes_each_chunk_before_committing_its_delete() throws Exception {
+        var database = Mockito.mock(Database.class);
+        Mockito.when(database.copyOutAndCommit(anyString(), Mockito.anyBoolean(), any())).thenAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(2);
+            out.write(((boolean) invocation.getArgument(1) ? "id,user_id\n11,7\n12,7\n" : "13,7\n").getBytes(StandardCharsets.UTF_8));
+            return (boolean) invocation.getArgument(1) ? 2L : 1L;
+        });
+        var archiveFile = Path.of("target/test/TruncateNotificationsTest/archive.csv");
+        Files.createDirectories(archiveFile.getParent());
+        // The archive is appended to, so start without one
+        Files.deleteIfExists(archiveFile);
+
+        var userOptions = new TruncateNotifications.UserOptions();
+        userOptions.user = 7;
+
+        var cmd = getCmd(database, 0, userOptions);
+        setField(cmd, "chunked", true);
+        setField(cmd, "chunkSize", 2);
+        setField(cmd, "archiveFile", archiveFile);
+        cmd.doCall();
+
+        assertThat(stderr.toString()).isEqualTo("7: OK. ");
+        assertThat(stdout.toString()).contains("Deleted 3 record(s) for user with id 7");
+        assertThat(Files.readString(archiveFile)).isEqualTo("id,user_id\n11,7\n12,7\n13,7\n");
+        verify(database, times(1)).copyOutAndCommit(
+            Mockito.matches("WITH chunk AS \\(SELECT id FROM usernotification\nWHERE user_id = 7 AND senddate < '[^']+'::timestamp\nORDER BY senddate, id LIMIT 2\\) "
+                + "DELETE FROM usernotification n USING chunk c WHERE n.id = c.id RETURNING n\\.\\*"), eq(true), any());
+        verify(database, times(1)).copyOutAndCommit(anyString(), eq(false), any());
+        verify(database, never()).query(anyString(), anyList());
+    }
+
+    @Test
+    public void doCall_dry_run_estimate_divides_the_chunk_delays_over_the_partitions() throws Exception {
+        var database = Mockito.mock(Database.class);
+        doReturn(Stream.of(
+            new TruncateNotifications.DeletableCount(5, 30_000L),
+            new TruncateNotifications.DeletableCount(2, 20_000L)
+        )).when(database).stream(anyString(), anyList(), any());
+        Mockito.when(database.query(anyString(), anyList())).thenReturn(List.of(List.of("Seq Scan on usernotification")));
+
+        var userOptions = new TruncateNotifications.UserOptions();
+        userOptions.allUsers = true;
+
+        var cmd = getCmd(database, 10, userOptions);
+        setField(cmd, "dryRun", true);
+        setField(cmd, "setBased", true);
+        setField(cmd, "chunkSize", 100);
+        setField(cmd, "chunkDelay", 100L);
+        setField(cmd, "partitions", 4);
+        cmd.doCall();
+
+        // 500 chunks with a delay of 100 ms, in 4 partitions
+        assertThat(stdout.toString()).endsWith("Estimated runtime, not counting the statements themselves (lower bound): PT12.5S\n");
+    }
+
+    private static void setField(TruncateNotifications cmd, String name, Object value) throws NoSuchFieldException, IllegalAccessException {
+        var field = TruncateNotifications.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(cmd, value);
+    }
+
     private static TruncateNotifications getCmd(Database database, int numberOfRecordsToKeep, TruncateNotifications.UserOptions userOptions ) throws NoSuchFieldException, IllegalAccessException {
         var cmd = new TruncateNotifications(database);
 
@@ -18,16 +18,20 @@ package nl.knaw.dans.dvcli.inputparsers;
 import nl.knaw.dans.dvcli.AbstractTestWithTestDir;
 import nl.knaw.dans.dvcli.action.Pair;
 import nl.knaw.dans.lib.dataverse.CompoundFieldBuilder;
+import nl.knaw.dans.lib.dataverse.model.dataset.MetadataField;
 import nl.knaw.dans.lib.dataverse.model.dataset.PrimitiveMultiValueField;
 import nl.knaw.dans.lib.dataverse.model.dataset.PrimitiveSingleValueField;
 import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.Test;
 
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 public class FieldValuesParamsFileParserTest extends AbstractTestWithTestDir {
 
@@ -96,4 +100,111 @@ public class FieldValuesParamsFileParserTest extends AbstractTestWithTestDir {
         );
     }
 
+    @Test
+    public void parse_in_parallel_should_preserve_order_of_rows() throws Exception {
+        var csv = new StringBuilder("PID,field1\n");
+        IntStream.range(0, 100).forEach(i -> csv.append("doi:10.5072/dans-").append(i).append(",value").append(i).append("\n"));
+        FileUtils.writeStringToFile(testDir.resolve("params.csv").toFile(), csv.toString(), StandardCharsets.UTF_8);
+
+        var expected = IntStream.range(0, 100)
+            .mapToObj(i -> new Pair<String, Set<MetadataField>>("doi:10.5072/dans-" + i, Set.of(new PrimitiveSingleValueField("field1", "value" + i))))
+            .toList();
+
+        try (var result = new FieldValuesParamsFileParser(testDir.resolve("params.csv")).parse(4, 7)) {
+            assertThat(result.toList()).containsExactlyElementsOf(expected);
+        }
+    }
+
+    @Test
+    public void parse_in_parallel_should_treat_a_quote_inside_an_unquoted_value_as_an_ordinary_character() throws Exception {
+        FileUtils.writeStringToFile(testDir.resolve("params.csv").toFile(), """
+            PID,field1
+            doi:10.5072/dans-1,a 5" disk
+            doi:10.5072/dans-2,plain
+            doi:10.5072/dans-3,"quoted, with comma"
+            """, StandardCharsets.UTF_8);
+
+        try (var result = new FieldValuesParamsFileParser(testDir.resolve("params.csv")).parse(2, 1)) {
+            assertThat(result).containsExactly(
+                new Pair<>("doi:10.5072/dans-1", Set.of(new PrimitiveSingleValueField("field1", "a 5\" disk"))),
+                new Pair<>("doi:10.5072/dans-2", Set.of(new PrimitiveSingleValueField("field1", "plain"))),
+                new Pair<>("doi:10.5072/dans-3", Set.of(new PrimitiveSingleValueField("field1", "quoted, with comma")))
+            );
+        }
+    }
+
+    @Test
+    public void parse_in_parallel_should_not_split_quoted_values_with_newlines() throws Exception {
+        FileUtils.writeStringToFile(testDir.resolve("params.csv").toFile(), """
+            PID,field1
+            doi:10.5072/dans-1,"first line
+            second line"
+            
+            doi:10.5072/dans-2,"with ""quotes""\"
+            doi:10.5072/dans-3,plain
+            """, StandardCharsets.UTF_8);
+
+        try (var result = new FieldValuesParamsFileParser(testDir.resolve("params.csv")).parse(2, 1)) {
+            assertThat(result).containsExactly(
+                new Pair<>("doi:10.5072/dans-1", Set.of(new PrimitiveSingleValueField("field1", "first line\nsecond line"))),
+                new Pair<>("doi:10.5072/dans-2", Set.of(new PrimitiveSingleValueField("field1", "with \"quotes\""))),
+                new Pair<>("doi:10.5072/dans-3", Set.of(new PrimitiveSingleValueField("field1", "plain")))
+            );
+        }
+    }
+
+    @Test
+    public void parse_in_parallel_should_return_rows_before_a_failing_row() throws Exception {
+        FileUtils.writeStringToFile(testDir.resolve("params.csv").toFile(), """
+            PID,field1
+            doi:10.5072/dans-1,foo
+            ,bar
+            doi:10.5072/dans-3,baz
+            """, StandardCharsets.UTF_8);
+
+        var rows = new ArrayList<String>();
+        try (var result = new FieldValuesParamsFileParser(testDir.resolve("params.csv")).parse(2, 10)) {
+            assertThatThrownBy(() -> result.forEach(p -> rows.add(p.getFirst())))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("PID is missing in the parameters file");
+        }
+        assertThat(rows).containsExactly("doi:10.5072/dans-1");
+    }
+
+    @Test
+    public void parse_should_reject_invalid_header_before_any_row_is_read() throws Exception {
+        FileUtils.writeStringToFile(testDir.resolve("params.csv").toFile(), """
+            PID,field-1
+            doi:10.5072/dans-1,foo
+            """, StandardCharsets.UTF_8);
+        var parser = new FieldValuesParamsFileParser(testDir.resolve("params.csv"));
+
+        assertThatThrownBy(parser::parse)
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Invalid field name: field-1");
+        assertThatThrownBy(() -> parser.parse(2, 1))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Invalid field name: field-1");
+    }
+
+    @Test
+    public void parse_should_reject_row_with_fewer_values_than_columns() throws Exception {
+        FileUtils.writeStringToFile(testDir.resolve("params.csv").toFile(), """
+            PID,field1,field2
+            doi:10.5072/dans-1,foo,bar
+            doi:10.5072/dans-2,foo
+            """, StandardCharsets.UTF_8);
+        var parser = new FieldValuesParamsFileParser(testDir.resolve("params.csv"));
+
+        try (var result = parser.parse()) {
+            assertThatThrownBy(result::toList)
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Row for doi:10.5072/dans-2 has 2 values, but the header has 3 columns");
+        }
+        try (var result = parser.parse(2, 1)) {
+            assertThatThrownBy(result::toList)
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Row for doi:10.5072/dans-2 has 2 values, but the header has 3 columns");
+        }
+    }
 }
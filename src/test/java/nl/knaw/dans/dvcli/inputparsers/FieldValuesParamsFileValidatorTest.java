@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.inputparsers;
+
+import nl.knaw.dans.dvcli.AbstractTestWithTestDir;
+import nl.knaw.dans.dvcli.inputparsers.FieldValuesParamsFileValidator.Problem;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FieldValuesParamsFileValidatorTest extends AbstractTestWithTestDir {
+
+    @Test
+    public void validate_should_find_no_problems_in_valid_file() throws Exception {
+        FileUtils.writeStringToFile(testDir.resolve("params.csv").toFile(), """
+            PID,field1,parentField1*.subfieldA
+            doi:10.5072/dans-2a3-4b5,foo,bar
+            doi:10.5072/dans-2a3-4b6,,baz
+            """, StandardCharsets.UTF_8);
+
+        assertThat(new FieldValuesParamsFileValidator(testDir.resolve("params.csv"), 2).validate()).isEmpty();
+    }
+
+    @Test
+    public void validate_should_report_all_problems_with_line_numbers() throws Exception {
+        FileUtils.writeStringToFile(testDir.resolve("params.csv").toFile(), """
+            PID,field-1,field2
+            doi:10.5072/dans-2a3-4b5,foo,bar
+            ,foo,bar
+            
+            doi:10.5072/dans-2a3-4b6,,
+            doi:10.5072/dans-2a3-4b7,"multi
+            line",bar
+            doi:10.5072/dans-2a3-4b8,foo
+            """, StandardCharsets.UTF_8);
+
+        assertThat(new FieldValuesParamsFileValidator(testDir.resolve("params.csv"), 2).validate()).containsExactly(
+            new Problem(1, "Invalid field name: field-1"),
+            new Problem(3, "PID is missing"),
+            new Problem(4, "Empty line"),
+            new Problem(5, "Row has no field values"),
+            new Problem(8, "Row has 2 values, but the header has 3 columns"));
+    }
+
+    @Test
+    public void validate_should_report_missing_pid_column() throws Exception {
+        FileUtils.writeStringToFile(testDir.resolve("params.csv").toFile(), """
+            field1
+            foo
+            """, StandardCharsets.UTF_8);
+
+        assertThat(new FieldValuesParamsFileValidator(testDir.resolve("params.csv"), 1).validate()).containsExactly(
+            new Problem(1, "Column 'PID' is missing"));
+    }
+
+    @Test
+    public void validate_should_report_csv_syntax_error_with_line_number() throws Exception {
+        FileUtils.writeStringToFile(testDir.resolve("params.csv").toFile(), """
+            PID,field1
+            doi:10.5072/dans-2a3-4b5,
+            doi:10.5072/dans-2a3-4b6,"unterminated
+            doi:10.5072/dans-2a3-4b7,foo
+            """, StandardCharsets.UTF_8);
+
+        var problems = new FieldValuesParamsFileValidator(testDir.resolve("params.csv"), 1).validate();
+
+        assertThat(problems).hasSize(2);
+        assertThat(problems.get(0)).isEqualTo(new Problem(2, "Row has no field values"));
+        assertThat(problems.get(1).line()).isEqualTo(3);
+        assertThat(problems.get(1).message()).startsWith("Invalid CSV: ");
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2024 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.dvcli.inputparsers;
+
+import nl.knaw.dans.lib.dataverse.CompoundFieldBuilder;
+import nl.knaw.dans.lib.dataverse.model.dataset.PrimitiveMultiValueField;
+import nl.knaw.dans.lib.dataverse.model.dataset.PrimitiveSingleValueField;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class FieldValuesPlanTest {
+
+    @Test
+    public void compile_should_reject_invalid_field_name() {
+        assertThatThrownBy(() -> FieldValuesPlan.compile(new String[] { "PID", "field-1" }, "PID"))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Invalid field name: field-1");
+    }
+
+    @Test
+    public void compile_should_skip_ignored_columns() {
+        var plan = FieldValuesPlan.compile(new String[] { "PID", "field1" }, "PID");
+        String[] row = { "doi:10.5072/dans-2a3-4b5", "foo" };
+
+        assertThat(plan.getColumnCount()).isEqualTo(2);
+        assertThat(plan.apply(i -> row[i]))
+            .containsExactly(new PrimitiveSingleValueField("field1", "foo"));
+    }
+
+    @Test
+    public void apply_should_create_primitive_and_compound_fields() {
+        var plan = FieldValuesPlan.compile(new String[] { "field1*", "parent*.childA", "parent*.childB", "other.child" });
+        String[] row = { "foo", "bar", "baz", "qux" };
+
+        assertThat(plan.apply(i -> row[i])).containsExactlyInAnyOrder(
+            new PrimitiveMultiValueField("field1", List.of("foo")),
+            new CompoundFieldBuilder("parent", true)
+                .addSubfield("childA", "bar")
+                .addSubfield("childB", "baz")
+                .build(),
+            new CompoundFieldBuilder("other", false)
+                .addSubfield("child", "qux")
+                .build());
+    }
+
+    @Test
+    public void apply_should_skip_blank_values_and_compound_fields_without_values() {
+        var plan = FieldValuesPlan.compile(new String[] { "field1", "field2", "parent.childA", "parent.childB" });
+        String[] row = { "foo", " ", "", null };
+
+        assertThat(plan.apply(i -> row[i]))
+            .containsExactly(new PrimitiveSingleValueField("field1", "foo"));
+    }
+
+    @Test
+    public void plan_can_be_applied_to_multiple_rows() {
+        var plan = FieldValuesPlan.compile(new String[] { "parent.child" });
+
+        assertThat(plan.apply(i -> "value1"))
+            .containsExactly(new CompoundFieldBuilder("parent", false).addSubfield("child", "value1").build());
+        assertThat(plan.apply(i -> "value2"))
+            .containsExactly(new CompoundFieldBuilder("parent", false).addSubfield("child", "value2").build());
+    }
+}